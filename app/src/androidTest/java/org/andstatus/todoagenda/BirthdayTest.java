@@ -82,10 +82,10 @@ public class BirthdayTest extends BaseWidgetTest {
         assertEquals(entriesWithoutLastExpected + 1, getFactory().getWidgetEntries().size());
         if (entriesWithoutLastExpected > 0) {
             CalendarEntry birthday = (CalendarEntry) getFactory().getWidgetEntries().get(1);
-            assertEquals(9, birthday.entryDate.dayOfMonth().get());
-            assertEquals(0, birthday.entryDate.hourOfDay().get());
-            assertEquals(0, birthday.entryDate.minuteOfHour().get());
-            assertEquals(0, birthday.entryDate.millisOfDay().get());
+            assertEquals(9, birthday.getEntryDate().dayOfMonth().get());
+            assertEquals(0, birthday.getEntryDate().hourOfDay().get());
+            assertEquals(0, birthday.getEntryDate().minuteOfHour().get());
+            assertEquals(0, birthday.getEntryDate().millisOfDay().get());
             assertEquals(true, birthday.allDay);
         }
         LastEntry lastEntry = (LastEntry) getFactory().getWidgetEntries()
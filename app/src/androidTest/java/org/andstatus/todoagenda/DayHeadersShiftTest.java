@@ -23,8 +23,8 @@ public class DayHeadersShiftTest extends BaseWidgetTest {
 
 
         assertEquals("First day header should be Jan 8\n" + getFactory().getWidgetEntries(), 8,
-                dayHeader0.entryDate.dayOfMonth().get());
-        CharSequence dayHeaderTitle = getSettings().dayHeaderDateFormatter().formatDate(dayHeader0.entryDate);
+                dayHeader0.getEntryDate().dayOfMonth().get());
+        CharSequence dayHeaderTitle = getSettings().dayHeaderDateFormatter().formatDate(dayHeader0.getEntryDate());
         assertEquals("First day header should show Jan 8\n" + getFactory().getWidgetEntries() + "\n",
                 "Wednesday, January 8", dayHeaderTitle);
     }
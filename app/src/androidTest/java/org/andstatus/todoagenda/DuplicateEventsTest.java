@@ -1,8 +1,15 @@
 package org.andstatus.todoagenda;
 
+import org.andstatus.todoagenda.calendar.CalendarEvent;
 import org.andstatus.todoagenda.provider.QueryResultsStorage;
+import org.andstatus.todoagenda.widget.CalendarEntry;
+import org.andstatus.todoagenda.widget.WidgetEntry;
+import org.joda.time.DateTime;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -23,4 +30,55 @@ public class DuplicateEventsTest extends BaseWidgetTest {
         playResults(method);
         assertEquals("Number of entries", 40, getFactory().getWidgetEntries().size());
     }
+
+    /** Each event is present in three calendars, as in shared calendars of different accounts */
+    @Test
+    public void testFilterOutDuplicatesOfManyEntries() {
+        final int numberOfEvents = 2000;
+        final int copies = 3;
+        DateTime today = getSettings().clock().now().withTimeAtStartOfDay();
+        List<WidgetEntry> entries = new ArrayList<>();
+        int eventId = 0;
+        for (int ind = 0; ind < numberOfEvents; ind++) {
+            for (int copy = 0; copy < copies; copy++) {
+                CalendarEvent event = new CalendarEvent(getSettings(), provider.getContext(), provider.getWidgetId(),
+                        false);
+                event.setEventSource(provider.getFirstActiveEventSource());
+                event.setEventId(++eventId);
+                event.setTitle("Event " + ind);
+                event.setStartDate(today.plusMinutes(ind * 30));
+                event.setEndDate(today.plusMinutes(ind * 30 + 60));
+                event.setLocation(ind % 2 == 0 ? "Room " + ind : "");
+                entries.add(CalendarEntry.fromEvent(getSettings(), event, event.getStartDate()));
+            }
+        }
+
+        List<WidgetEntry> deduplicated = RemoteViewsFactory.filterOutDuplicates(entries);
+        assertEquals("Number of entries", numberOfEvents, deduplicated.size());
+        for (int ind = 0; ind < deduplicated.size(); ind++) {
+            assertEquals(entries.get(ind * copies), deduplicated.get(ind));
+        }
+
+        List<WidgetEntry> fewEntries = entries.subList(0, 300 * copies);
+        assertEquals(filterOutDuplicatesPairwise(fewEntries), RemoteViewsFactory.filterOutDuplicates(fewEntries));
+    }
+
+    /** Compares each entry with each other one, so the result is obviously right */
+    private static List<WidgetEntry> filterOutDuplicatesPairwise(List<WidgetEntry> inputEntries) {
+        List<WidgetEntry> deduplicated = new ArrayList<>();
+        List<WidgetEntry> hidden = new ArrayList<>();
+        for(int ind1 = 0; ind1 < inputEntries.size(); ind1++) {
+            WidgetEntry inputEntry = inputEntries.get(ind1);
+            if (!hidden.contains(inputEntry)) {
+                deduplicated.add(inputEntry);
+                for(int ind2 = ind1 + 1; ind2 < inputEntries.size(); ind2++) {
+                    WidgetEntry entry2 = inputEntries.get(ind2);
+                    if (!hidden.contains(entry2) && inputEntry.duplicates(entry2)) {
+                        hidden.add(entry2);
+                    }
+                }
+            }
+        }
+        return deduplicated;
+    }
 }
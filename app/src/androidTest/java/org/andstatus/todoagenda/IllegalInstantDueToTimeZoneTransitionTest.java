@@ -5,7 +5,10 @@ import android.util.Log;
 import org.andstatus.todoagenda.calendar.CalendarEvent;
 import org.andstatus.todoagenda.prefs.OrderedEventSource;
 import org.andstatus.todoagenda.provider.QueryRow;
+import org.andstatus.todoagenda.util.AllDayMillisConverter;
+import org.andstatus.todoagenda.util.MyClock;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
 import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDateTime;
 import org.json.JSONException;
@@ -143,4 +146,56 @@ public class IllegalInstantDueToTimeZoneTransitionTest extends BaseWidgetTest {
             DateTimeZone.setDefault(defaultZone);
         }
     }
+
+    /** Midnight is in a time gap on these days, so a day starts at 01:00 */
+    @Test
+    public void testStartOfDayDuringTimeGap() {
+        startOfDay("America/Sao_Paulo", new DateTime(2018, 11, 4, 12, 0, DateTimeZone.UTC));
+        startOfDay("Asia/Beirut", new DateTime(2020, 3, 29, 12, 0, DateTimeZone.UTC));
+    }
+
+    private void startOfDay(String zoneId, DateTime dateUtc) {
+        DateTimeZone zone = DateTimeZone.forID(zoneId);
+        for (int hours = -30; hours < 30; hours++) {
+            DateTime date = dateUtc.plusHours(hours).withZone(zone);
+            long epochDay = MyClock.toEpochDay(date.getMillis(), zone);
+            assertEquals(date.toString(), date.withTimeAtStartOfDay().getMillis(),
+                    MyClock.startOfDayMillis(epochDay, zone));
+            assertEquals(date.toString(), MyClock.startOfNextDay(date).getMillis(),
+                    MyClock.startOfDayMillis(epochDay + 1, zone));
+        }
+    }
+
+    @Test
+    public void testAllDayMillisConversion() {
+        String[] zoneIds = {"CET", "America/Sao_Paulo", "Asia/Beirut", "America/Havana", "Asia/Tehran"};
+        long firstDay = new DateTime(1980, 1, 1, 0, 0, DateTimeZone.UTC).getMillis() / DateTimeConstants.MILLIS_PER_DAY;
+        int numberOfDays = 365 * 45;
+        for (String zoneId : zoneIds) {
+            DateTimeZone zone = DateTimeZone.forID(zoneId);
+            AllDayMillisConverter converter = AllDayMillisConverter.forZone(zone);
+            for (int ind = 0; ind < numberOfDays; ind++) {
+                long allDayMillis = (firstDay + ind) * DateTimeConstants.MILLIS_PER_DAY;
+                long startOfDay = converter.toStartOfDay(allDayMillis);
+                assertEquals(zoneId + " " + new DateTime(allDayMillis, DateTimeZone.UTC),
+                        fromAllDayMillisByLocalDateTime(allDayMillis, zone), startOfDay);
+                assertEquals(allDayMillis, AllDayMillisConverter.toAllDayMillis(startOfDay, zone));
+            }
+        }
+    }
+
+    /** The first valid hour of the day in the time zone, found step by step */
+    private static long fromAllDayMillisByLocalDateTime(long millis, DateTimeZone zone) {
+        DateTime utcDate = new DateTime(millis, DateTimeZone.UTC);
+        LocalDateTime ldt = new LocalDateTime()
+                .withYear(utcDate.getYear())
+                .withMonthOfYear(utcDate.getMonthOfYear())
+                .withDayOfMonth(utcDate.getDayOfMonth())
+                .withMillisOfDay(0);
+        int hour = 0;
+        while (zone.isLocalDateTimeGap(ldt)) {
+            ldt = ldt.withHourOfDay(++hour);
+        }
+        return ldt.toDateTime(zone).getMillis();
+    }
 }
@@ -0,0 +1,85 @@
+package org.andstatus.todoagenda;
+
+import org.andstatus.todoagenda.provider.EventProviderType;
+import org.andstatus.todoagenda.provider.QueryResultsStorage;
+import org.andstatus.todoagenda.widget.CalendarEntry;
+import org.andstatus.todoagenda.widget.TaskEntry;
+import org.andstatus.todoagenda.widget.WidgetEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalReloadTest extends BaseWidgetTest {
+
+    @Test
+    public void testOnlyChangedProviderIsRequeried() {
+        final String method = "testOnlyChangedProviderIsRequeried";
+        QueryResultsStorage inputs = provider.loadResultsAndSettings(
+                org.andstatus.todoagenda.tests.R.raw.past_due_header_with_tasks);
+        provider.addResults(inputs);
+        playResults(method);
+
+        List<WidgetEntry> calendarEntries1 = entriesOf(CalendarEntry.class);
+        List<WidgetEntry> taskEntries1 = entriesOf(TaskEntry.class);
+        assertFalse("Calendar entries", calendarEntries1.isEmpty());
+        assertFalse("Task entries", taskEntries1.isEmpty());
+
+        int widgetId = provider.getWidgetId();
+        RemoteViewsFactory factory = getFactory();
+        boolean registered = RemoteViewsFactory.factories.putIfAbsent(widgetId, factory) == null;
+        try {
+            RemoteViewsFactory.onProvidersChanged(widgetId, Collections.singleton(EventProviderType.CALENDAR));
+            factory.onDataSetChanged();
+        } finally {
+            if (registered) RemoteViewsFactory.factories.remove(widgetId);
+        }
+
+        List<WidgetEntry> calendarEntries2 = entriesOf(CalendarEntry.class);
+        List<WidgetEntry> taskEntries2 = entriesOf(TaskEntry.class);
+        assertEquals("Calendar entries", calendarEntries1.size(), calendarEntries2.size());
+        for (int ind = 0; ind < calendarEntries1.size(); ind++) {
+            assertNotSame("Calendar entry should be re-queried " + ind,
+                    calendarEntries1.get(ind), calendarEntries2.get(ind));
+        }
+        assertEquals("Task entries", taskEntries1.size(), taskEntries2.size());
+        for (int ind = 0; ind < taskEntries1.size(); ind++) {
+            assertSame("Task entry should be reused " + ind, taskEntries1.get(ind), taskEntries2.get(ind));
+        }
+    }
+
+    @Test
+    public void testTimeBoundaryBetweenReloads() {
+        final String method = "testTimeBoundaryBetweenReloads";
+        QueryResultsStorage inputs = provider.loadResultsAndSettings(
+                org.andstatus.todoagenda.tests.R.raw.past_due_header_with_tasks);
+        provider.addResults(inputs);
+        playResults(method);
+
+        List<WidgetEntry> entries = new ArrayList<>(getFactory().getWidgetEntries());
+        long nowMillis = getSettings().clock().now().getMillis();
+        assertFalse("No time passed", RemoteViewsFactory.hasTimeBoundaryBetween(entries, nowMillis, nowMillis));
+
+        WidgetEntry withEnd = entries.stream().filter(entry -> entry.getEndDate() != null).findFirst()
+                .orElseThrow(() -> new AssertionError("No entries with end date"));
+        long endMillis = withEnd.getEndDate().getMillis();
+        assertTrue("End of " + withEnd,
+                RemoteViewsFactory.hasTimeBoundaryBetween(entries, endMillis - 1, endMillis));
+        assertTrue("Start of " + withEnd,
+                RemoteViewsFactory.hasTimeBoundaryBetween(entries, withEnd.entryMillis - 1, withEnd.entryMillis));
+    }
+
+    private List<WidgetEntry> entriesOf(Class<? extends WidgetEntry> clazz) {
+        return getFactory().getWidgetEntries().stream()
+                .filter(entry -> entry.getClass() == clazz)
+                .collect(Collectors.toList());
+    }
+}
@@ -38,16 +38,16 @@ public class MultidayAllDayEventTest extends BaseWidgetTest {
         for (int ind = 0; ind < getFactory().getWidgetEntries().size(); ind++) {
             WidgetEntry entry = getFactory().getWidgetEntries().get(ind);
             String logMsg = method + "; " + String.format("%02d ", ind) + entry.toString();
-            if (entry.entryDay.isBefore(today)) {
+            if (entry.getEntryDay().isBefore(today)) {
                 fail("Is present before today " + logMsg);
             }
-            if (entry.entryDay.isAfter(endOfRangeTime)) {
+            if (entry.getEntryDay().isAfter(endOfRangeTime)) {
                 fail("After end of range " + logMsg);
             }
-            int dayOfEntry = entry.entryDay.getDayOfYear();
+            int dayOfEntry = entry.getEntryDay().getDayOfYear();
             if (entry instanceof DayHeader) {
                 if (dayOfHeaderPrev == 0) {
-                    if (entry.entryDate.withTimeAtStartOfDay().isAfter(today)) {
+                    if (entry.getEntryDate().withTimeAtStartOfDay().isAfter(today)) {
                         fail("No today's header " + logMsg);
                     }
                 } else {
@@ -58,7 +58,7 @@ public class MultidayAllDayEventTest extends BaseWidgetTest {
                 assertEquals(LastEntry.LastEntryType.LAST, ((LastEntry) entry).type);
             } else {
                 if (dayOfEventEntryPrev == 0) {
-                    if (entry.entryDate.withTimeAtStartOfDay().isAfter(today)) {
+                    if (entry.getEntryDate().withTimeAtStartOfDay().isAfter(today)) {
                         fail("Today not filled " + logMsg);
                     }
                 } else {
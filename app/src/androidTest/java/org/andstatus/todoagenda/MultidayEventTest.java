@@ -52,16 +52,16 @@ public class MultidayEventTest extends BaseWidgetTest {
         assertTrue("Is Part of Multi Day Event", entry1.isPartOfMultiDayEvent());
         assertTrue("Is start of Multi Day Event", entry1.isStartOfMultiDayEvent());
         assertFalse("Is not an end of Multi Day Event", entry1.isEndOfMultiDayEvent());
-        assertEquals("Start Time didn't change for today's event", event.getStartDate(), entry1.entryDate);
-        assertEquals("Entry end time should be the same as Event end time", event.getEndDate(), entry1.endDate);
+        assertEquals("Start Time didn't change for today's event", event.getStartDate(), entry1.getEntryDate());
+        assertEquals("Entry end time should be the same as Event end time", event.getEndDate(), entry1.getEndDate());
 
         assertNotNull(entry2);
         assertFalse("Is not active event", entry2.getEvent().isActive());
         assertTrue("Is Part of Multi Day Event", entry2.isPartOfMultiDayEvent());
         assertFalse("Is not start of Multi Day Event", entry2.isStartOfMultiDayEvent());
         assertTrue("Is end of Multi Day Event", entry2.isEndOfMultiDayEvent());
-        assertEquals("Start Time of tomorrow's entry is midnight", today.plusDays(1), entry2.entryDate);
-        assertEquals("Tomorrow event entry end time is the same as for the event", entry2.getEvent().getEndDate(), entry2.endDate);
+        assertEquals("Start Time of tomorrow's entry is midnight", today.plusDays(1), entry2.getEntryDate());
+        assertEquals("Tomorrow event entry end time is the same as for the event", entry2.getEvent().getEndDate(), entry2.getEndDate());
     }
 
     /**
@@ -85,8 +85,8 @@ public class MultidayEventTest extends BaseWidgetTest {
 
     private void assertSundayEntryAt(CalendarEvent event, DateTime sunday, DateTime currentDateTime) {
         CalendarEntry entry1 = getSundayEntryAt(event, currentDateTime);
-        assertEquals(sunday, entry1.entryDate);
-        assertEquals(event.getEndDate(), entry1.endDate);
+        assertEquals(sunday, entry1.getEntryDate());
+        assertEquals(event.getEndDate(), entry1.getEndDate());
         assertEquals(event.getTitle(), entry1.getTitle());
         String timeString = entry1.getEventTimeString();
         assertTrue(timeString, timeString.contains(ARROW));
@@ -102,7 +102,7 @@ public class MultidayEventTest extends BaseWidgetTest {
         for (WidgetEntry item : getFactory().getWidgetEntries()) {
             if (item instanceof CalendarEntry) {
                 CalendarEntry entry = (CalendarEntry) item;
-                if (entry.entryDate.getDayOfMonth() == 20) {
+                if (entry.getEntryDate().getDayOfMonth() == 20) {
                     assertNull(sundayEntry);
                     sundayEntry = entry;
                 }
@@ -43,8 +43,8 @@ public class OngoingEventTest extends BaseWidgetTest {
         assertNotNull(entry);
         assertTrue("Is active event", entry.getEvent().isActive());
         assertFalse("Is not part of Multi Day Event", entry.isPartOfMultiDayEvent());
-        assertEquals("Start Time didn't change for today's event", event.getStartDate(), entry.entryDate);
-        assertEquals("End Time didn't change for today's event", event.getEndDate(), entry.endDate);
+        assertEquals("Start Time didn't change for today's event", event.getStartDate(), entry.getEntryDate());
+        assertEquals("End Time didn't change for today's event", event.getEndDate(), entry.getEndDate());
     }
 
     /**
@@ -74,8 +74,8 @@ public class OngoingEventTest extends BaseWidgetTest {
         assertTrue("Is Part of Multi Day Event", entry.isPartOfMultiDayEvent());
         assertFalse("Is not start of Multi Day Event", entry.isStartOfMultiDayEvent());
         assertTrue("Is end of Multi Day Event", entry.isEndOfMultiDayEvent());
-        assertEquals("Yesterday's event entry start time is midnight", today, entry.entryDate);
-        assertEquals("End Time didn't change for yesterday's event", event.getEndDate(), entry.endDate);
+        assertEquals("Yesterday's event entry start time is midnight", today, entry.getEntryDate());
+        assertEquals("End Time didn't change for yesterday's event", event.getEndDate(), entry.getEndDate());
     }
 
     @Test
@@ -103,8 +103,8 @@ public class OngoingEventTest extends BaseWidgetTest {
         assertTrue("Is Part of Multi Day Event", entry.isPartOfMultiDayEvent());
         assertTrue("Is start of Multi Day Event", entry.isStartOfMultiDayEvent());
         assertFalse("Is not an end of Multi Day Event", entry.isEndOfMultiDayEvent());
-        assertEquals("Start Time didn't change for today's event", event.getStartDate(), entry.entryDate);
-        assertEquals("Entry end time is the same as Event end time", event.getEndDate(), entry.endDate);
+        assertEquals("Start Time didn't change for today's event", event.getStartDate(), entry.getEntryDate());
+        assertEquals("Entry end time is the same as Event end time", event.getEndDate(), entry.getEndDate());
     }
 
 }
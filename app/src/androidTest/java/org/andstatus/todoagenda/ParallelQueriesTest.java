@@ -0,0 +1,90 @@
+package org.andstatus.todoagenda;
+
+import org.andstatus.todoagenda.provider.EventProviderType;
+import org.andstatus.todoagenda.widget.WidgetEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelQueriesTest {
+    private static final int WIDGET_ID = 0;
+
+    @Test
+    public void testQueriesRunInParallel() {
+        long sleepMillis = 500;
+        List<WidgetEntry> calendarEntries = new ArrayList<>();
+        List<WidgetEntry> taskEntries = new ArrayList<>();
+        Map<EventProviderType, Callable<List<? extends WidgetEntry>>> queries = new HashMap<>();
+        queries.put(EventProviderType.CALENDAR, slowQuery(sleepMillis, calendarEntries, null));
+        queries.put(EventProviderType.DMFS_OPEN_TASKS, slowQuery(sleepMillis, taskEntries, null));
+
+        long startedAt = System.currentTimeMillis();
+        Map<EventProviderType, List<? extends WidgetEntry>> results = RemoteViewsFactory.queryInParallel(WIDGET_ID,
+                queries, TimeUnit.SECONDS.toMillis(30), Collections.emptyMap());
+        long elapsed = System.currentTimeMillis() - startedAt;
+
+        assertSame(calendarEntries, results.get(EventProviderType.CALENDAR));
+        assertSame(taskEntries, results.get(EventProviderType.DMFS_OPEN_TASKS));
+        assertTrue("Queries should run in parallel, elapsed " + elapsed + " ms", elapsed < 2 * sleepMillis);
+    }
+
+    @Test
+    public void testSlowQueryIsCancelledAndPreviousEntriesAreShown() throws InterruptedException {
+        long timeoutMillis = 300;
+        List<WidgetEntry> previousCalendarEntries = new ArrayList<>();
+        List<WidgetEntry> taskEntries = new ArrayList<>();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Map<EventProviderType, Callable<List<? extends WidgetEntry>>> queries = new HashMap<>();
+        queries.put(EventProviderType.CALENDAR, slowQuery(TimeUnit.SECONDS.toMillis(60), new ArrayList<>(),
+                interrupted));
+        queries.put(EventProviderType.DMFS_OPEN_TASKS, slowQuery(0, taskEntries, null));
+        Map<EventProviderType, List<? extends WidgetEntry>> previousEntries = new HashMap<>();
+        previousEntries.put(EventProviderType.CALENDAR, previousCalendarEntries);
+
+        long startedAt = System.currentTimeMillis();
+        Map<EventProviderType, List<? extends WidgetEntry>> results = RemoteViewsFactory.queryInParallel(WIDGET_ID,
+                queries, timeoutMillis, previousEntries);
+        long elapsed = System.currentTimeMillis() - startedAt;
+
+        assertTrue("Should wait till the timeout only, elapsed " + elapsed + " ms", elapsed < 10 * timeoutMillis);
+        assertSame("Previous entries of the slow provider", previousCalendarEntries,
+                results.get(EventProviderType.CALENDAR));
+        assertSame(taskEntries, results.get(EventProviderType.DMFS_OPEN_TASKS));
+        assertTrue("The slow query should be interrupted", interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailedQueryWithoutPreviousEntries() {
+        Map<EventProviderType, Callable<List<? extends WidgetEntry>>> queries = new HashMap<>();
+        queries.put(EventProviderType.CALENDAR, () -> {
+            throw new IllegalStateException("Provider failed");
+        });
+        Map<EventProviderType, List<? extends WidgetEntry>> results = RemoteViewsFactory.queryInParallel(WIDGET_ID,
+                queries, TimeUnit.SECONDS.toMillis(30), Collections.emptyMap());
+        assertEquals(Collections.emptyList(), results.get(EventProviderType.CALENDAR));
+    }
+
+    private static Callable<List<? extends WidgetEntry>> slowQuery(long sleepMillis, List<WidgetEntry> entries,
+                                                                 CountDownLatch interrupted) {
+        return () -> {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                if (interrupted != null) interrupted.countDown();
+                throw e;
+            }
+            return entries;
+        };
+    }
+}
@@ -27,21 +27,21 @@ public class PastDueHeaderWithTasksTest extends BaseWidgetTest {
 
         playResults(method);
 
-        assertEquals("Past and Due header", MyClock.DATETIME_MIN, getFactory().getWidgetEntries().get(0).entryDate);
+        assertEquals("Past and Due header", MyClock.DATETIME_MIN, getFactory().getWidgetEntries().get(0).getEntryDate());
         assertEquals(WidgetEntryPosition.PAST_AND_DUE_HEADER, getFactory().getWidgetEntries().get(0).entryPosition);
 
         assertEquals("Past Calendar Entry", CalendarEntry.class, getFactory().getWidgetEntries().get(1).getClass());
         assertEquals("Due task Entry", TaskEntry.class, getFactory().getWidgetEntries().get(2).getClass());
         assertEquals("Due task Entry", dateTime(2019, 8, 1, 9, 0),
-                (getFactory().getWidgetEntries().get(2)).entryDate);
+                (getFactory().getWidgetEntries().get(2)).getEntryDate());
         assertEquals("Tomorrow header", dateTime(2019, 8, 5),
-                (getFactory().getWidgetEntries().get(3)).entryDate);
+                (getFactory().getWidgetEntries().get(3)).getEntryDate());
 
         assertEquals("Future task Entry", TaskEntry.class, getFactory().getWidgetEntries().get(6).getClass());
         assertEquals("Future task Entry", dateTime(2019, 8, 8, 21, 0),
-                (getFactory().getWidgetEntries().get(6)).entryDate);
+                (getFactory().getWidgetEntries().get(6)).getEntryDate());
 
-        assertEquals("End of list header", MyClock.DATETIME_MAX, getFactory().getWidgetEntries().get(7).entryDate);
+        assertEquals("End of list header", MyClock.DATETIME_MAX, getFactory().getWidgetEntries().get(7).getEntryDate());
         assertEquals(WidgetEntryPosition.END_OF_LIST_HEADER, getFactory().getWidgetEntries().get(7).entryPosition);
 
         assertEquals(WidgetEntryPosition.END_OF_LIST, getFactory().getWidgetEntries().get(8).entryPosition);
@@ -0,0 +1,53 @@
+package org.andstatus.todoagenda;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RefreshSchedulerTest extends BaseWidgetTest {
+
+    @Test
+    public void testRequestsInOneWindowAreCoalesced() {
+        int windowMillis = 500;
+        RefreshScheduler scheduler = new RefreshScheduler(windowMillis);
+        int widgetId1 = provider.getWidgetId();
+        int widgetId2 = widgetId1 + 1;
+        int numberOfRequests = 10;
+
+        long requested0 = scheduler.getRequested();
+        long executed0 = scheduler.getExecuted();
+        for (int i = 0; i < numberOfRequests; i++) {
+            scheduler.requestRefresh(provider.getContext(), new int[]{widgetId1, widgetId2}, null);
+        }
+        assertEquals(scheduler.getStats(), requested0 + 2 * numberOfRequests,
+                scheduler.getRequested());
+        assertEquals("Nothing should be executed during the window. " + scheduler.getStats(),
+                executed0, scheduler.getExecuted());
+
+        long startedAt = System.currentTimeMillis();
+        while (scheduler.getExecuted() == executed0
+                && System.currentTimeMillis() - startedAt < 10 * windowMillis) {
+            EnvironmentChangedReceiver.sleep(50);
+        }
+        EnvironmentChangedReceiver.sleep(windowMillis);
+        assertEquals("Each widget should be refreshed once. " + scheduler.getStats(),
+                executed0 + 2, scheduler.getExecuted());
+
+        scheduler.requestRefresh(provider.getContext(), new int[]{widgetId1}, null);
+        startedAt = System.currentTimeMillis();
+        while (scheduler.getExecuted() == executed0 + 2
+                && System.currentTimeMillis() - startedAt < 10 * windowMillis) {
+            EnvironmentChangedReceiver.sleep(50);
+        }
+        assertEquals("The next window. " + scheduler.getStats(),
+                executed0 + 3, scheduler.getExecuted());
+    }
+
+    @Test
+    public void testWindowIsBounded() {
+        RefreshScheduler scheduler = new RefreshScheduler(RefreshScheduler.MAX_WINDOW_MILLIS * 10);
+        assertTrue("Window: " + scheduler.getWindowMillis(),
+                scheduler.getWindowMillis() <= RefreshScheduler.MAX_WINDOW_MILLIS);
+    }
+}
@@ -0,0 +1,177 @@
+package org.andstatus.todoagenda;
+
+import android.widget.RemoteViews;
+
+import org.andstatus.todoagenda.calendar.CalendarEvent;
+import org.andstatus.todoagenda.provider.QueryResultsStorage;
+import org.andstatus.todoagenda.widget.DayHeader;
+import org.andstatus.todoagenda.widget.LastEntry;
+import org.andstatus.todoagenda.widget.WidgetEntry;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteViewsFactoryTest extends BaseWidgetTest {
+
+    @Test
+    public void testMergeSortedIsTheSameAsStableSort() {
+        final String method = "testMergeSortedIsTheSameAsStableSort";
+        loadPastDueHeaderWithTasks(method);
+
+        List<WidgetEntry> entries = getFactory().getWidgetEntries().stream()
+                .filter(entry -> !(entry instanceof DayHeader) && !(entry instanceof LastEntry))
+                .collect(Collectors.toList());
+        assertTrue("Too few entries: " + entries.size(), entries.size() > 3);
+
+        int numberOfLists = 3;
+        List<List<WidgetEntry>> split = new ArrayList<>();
+        for (int ind = 0; ind < numberOfLists; ind++) {
+            split.add(new ArrayList<>());
+        }
+        for (int ind = 0; ind < entries.size(); ind++) {
+            split.get(ind % numberOfLists).add(entries.get(ind));
+        }
+        List<List<? extends WidgetEntry>> sortedLists = new ArrayList<>(split);
+        // Equal entries in different lists
+        sortedLists.add(new ArrayList<>(sortedLists.get(1)));
+        sortedLists.add(Collections.emptyList());
+        sortedLists.add(0, new ArrayList<>(sortedLists.get(2)));
+
+        List<WidgetEntry> expected = new ArrayList<>();
+        sortedLists.forEach(expected::addAll);
+        Collections.sort(expected);
+
+        List<WidgetEntry> merged = new ArrayList<>();
+        Iterator<WidgetEntry> iterator = RemoteViewsFactory.mergeSorted(sortedLists);
+        while (iterator.hasNext()) {
+            merged.add(iterator.next());
+        }
+        assertEquals("Merged entries", expected.size(), merged.size());
+        for (int ind = 0; ind < expected.size(); ind++) {
+            assertSame("Entry " + ind + " " + merged.get(ind), expected.get(ind), merged.get(ind));
+        }
+
+        assertFalse("No lists", RemoteViewsFactory.mergeSorted(Collections.emptyList()).hasNext());
+    }
+
+    @Test
+    public void testViewsOfEqualEntriesAreReused() {
+        final String method = "testViewsOfEqualEntriesAreReused";
+        loadPastDueHeaderWithTasks(method);
+        RemoteViewsFactory factory = getFactory();
+        Map<WidgetEntry, RemoteViews> views1 = getViews(factory);
+
+        factory.onDataSetChanged();
+        Map<WidgetEntry, RemoteViews> views2 = getViews(factory);
+        assertEquals("Entries after reload", views1.size(), views2.size());
+        views1.forEach((entry, views) ->
+                assertSame("Views of unchanged entry " + entry, views, views2.get(entry)));
+
+        DateTime today = getSettings().clock().now().withTimeAtStartOfDay();
+        CalendarEvent event = new CalendarEvent(getSettings(), provider.getContext(), provider.getWidgetId(), false);
+        event.setEventSource(provider.getFirstActiveEventSource());
+        event.setEventId(1000001);
+        event.setTitle("An event added between reloads");
+        event.setStartDate(today.plusHours(20));
+        event.setEndDate(today.plusHours(21));
+        provider.addRow(event);
+
+        factory.onDataSetChanged();
+        Map<WidgetEntry, RemoteViews> views3 = getViews(factory);
+        WidgetEntry added = views3.keySet().stream()
+                .filter(entry -> event.getTitle().equals(entry.getTitle()))
+                .findFirst().orElse(null);
+        assertNotNull("Added entry not found", added);
+        assertFalse("Added entry is new", views2.containsKey(added));
+        assertFalse("Views of the added entry are new", views2.containsValue(views3.get(added)));
+        views2.forEach((entry, views) -> {
+            if (views3.containsKey(entry)) {
+                assertSame("Views of unchanged entry " + entry, views, views3.get(entry));
+            }
+        });
+    }
+
+    @Test
+    public void testItemIdsAreUniqueAndDontDependOnPositions() {
+        final String method = "testItemIdsAreUniqueAndDontDependOnPositions";
+        loadPastDueHeaderWithTasks(method);
+        RemoteViewsFactory factory = getFactory();
+        List<WidgetEntry> entries = new ArrayList<>(factory.getWidgetEntries());
+        assertTrue("Too few entries: " + entries.size(), entries.size() > 3);
+
+        long[] ids = RemoteViewsFactory.toItemIds(entries);
+        assertItemIds(entries, ids);
+        assertArrayEquals("The same ids for the same entries", ids, RemoteViewsFactory.toItemIds(entries));
+
+        List<WidgetEntry> repeatedFirst = new ArrayList<>(entries);
+        repeatedFirst.add(0, entries.get(2));
+        repeatedFirst.add(0, entries.get(2));
+        List<WidgetEntry> repeatedLast = new ArrayList<>(entries);
+        repeatedLast.add(entries.get(2));
+        repeatedLast.add(entries.get(2));
+        long[] ids1 = RemoteViewsFactory.toItemIds(repeatedFirst);
+        long[] ids2 = RemoteViewsFactory.toItemIds(repeatedLast);
+        assertItemIds(repeatedFirst, ids1);
+        assertItemIds(repeatedLast, ids2);
+        Arrays.sort(ids1);
+        Arrays.sort(ids2);
+        assertArrayEquals("Ids of repeated entries don't depend on their positions", ids1, ids2);
+
+        long[] itemIds = new long[factory.getCount()];
+        for (int position = 0; position < itemIds.length; position++) {
+            itemIds[position] = factory.getItemId(position);
+        }
+        factory.onDataSetChanged();
+        for (int position = 0; position < itemIds.length; position++) {
+            assertEquals("Item id at " + position, itemIds[position], factory.getItemId(position));
+        }
+    }
+
+    /** Ids are unique, and entries, which are not repeated, keep their entry ids */
+    private static void assertItemIds(List<WidgetEntry> entries, long[] ids) {
+        assertEquals("Number of ids", entries.size(), ids.length);
+        Map<Long, Integer> counts = new HashMap<>();
+        entries.forEach(entry -> counts.merge(entry.getEntryId(), 1, Integer::sum));
+        Set<Long> uniqueIds = new HashSet<>();
+        for (int ind = 0; ind < ids.length; ind++) {
+            assertTrue("Repeated id at " + ind + " " + entries.get(ind), uniqueIds.add(ids[ind]));
+            assertTrue("Zero id at " + ind, ids[ind] != 0);
+            if (counts.get(entries.get(ind).getEntryId()) == 1) {
+                assertEquals("Id at " + ind + " " + entries.get(ind), entries.get(ind).getEntryId(), ids[ind]);
+            }
+        }
+    }
+
+    private static Map<WidgetEntry, RemoteViews> getViews(RemoteViewsFactory factory) {
+        Map<WidgetEntry, RemoteViews> views = new IdentityHashMap<>();
+        for (int position = 0; position < factory.getCount(); position++) {
+            views.put(factory.getWidgetEntries().get(position), factory.getViewAt(position));
+        }
+        return views;
+    }
+
+    private void loadPastDueHeaderWithTasks(String method) {
+        QueryResultsStorage inputs = provider.loadResultsAndSettings(
+                org.andstatus.todoagenda.tests.R.raw.past_due_header_with_tasks);
+        provider.addResults(inputs);
+        playResults(method);
+    }
+}
@@ -24,8 +24,8 @@ public class WrongDatesLostEventsTest extends BaseWidgetTest {
         playResults(method);
         assertEquals("Number of entries", 11, getFactory().getWidgetEntries().size());
         assertEquals("On Saturday", "Maker Fair", ((CalendarEntry) getFactory().getWidgetEntries().get(4)).getEvent().getTitle());
-        assertEquals("On Saturday", 6, getFactory().getWidgetEntries().get(4).entryDate.getDayOfWeek());
+        assertEquals("On Saturday", 6, getFactory().getWidgetEntries().get(4).getEntryDate().getDayOfWeek());
         assertEquals("On Sunday", "Ribakovs", ((CalendarEntry) getFactory().getWidgetEntries().get(7)).getEvent().getTitle());
-        assertEquals("On Sunday", 7, getFactory().getWidgetEntries().get(7).entryDate.getDayOfWeek());
+        assertEquals("On Sunday", 7, getFactory().getWidgetEntries().get(7).getEntryDate().getDayOfWeek());
     }
 }
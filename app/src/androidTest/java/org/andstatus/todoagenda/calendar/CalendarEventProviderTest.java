@@ -0,0 +1,75 @@
+package org.andstatus.todoagenda.calendar;
+
+import org.andstatus.todoagenda.BaseWidgetTest;
+import org.andstatus.todoagenda.prefs.AllSettings;
+import org.andstatus.todoagenda.prefs.InstanceSettings;
+import org.andstatus.todoagenda.provider.EventProviderType;
+import org.andstatus.todoagenda.widget.CalendarEntry;
+import org.andstatus.todoagenda.widget.WidgetEntry;
+import org.andstatus.todoagenda.widget.WidgetEntryVisualizer;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class CalendarEventProviderTest extends BaseWidgetTest {
+    private static final String TAG = CalendarEventProviderTest.class.getSimpleName();
+
+    @Test
+    public void testDuplicatedRowsAreQueriedOnce() {
+        DateTime today = getSettings().clock().now().withTimeAtStartOfDay();
+        addEvent(1, "First", today.plusHours(10));
+        addEvent(2, "Second", today.plusHours(9));
+        addEvent(1, "First again", today.plusHours(10));
+        addEvent(1, "First next day", today.plusDays(1).plusHours(10));
+        addEvent(2, "Second again", today.plusHours(9));
+        provider.updateAppSettings(TAG);
+
+        List<CalendarEvent> events = new CalendarEventProvider(EventProviderType.CALENDAR, provider.getContext(),
+                provider.getWidgetId()).queryEvents();
+        List<String> titles = events.stream().map(CalendarEvent::getTitle).collect(Collectors.toList());
+        assertEquals("The first of equal events in the order of the query " + events,
+                "[First, Second, First next day]", titles.toString());
+    }
+
+    @Test
+    public void testReloadUsesBoundSettings() {
+        DateTime today = getSettings().clock().now().withTimeAtStartOfDay();
+        addEvent(1, "Bound", today.plusHours(10));
+        provider.updateAppSettings(TAG);
+        InstanceSettings bound = getSettings();
+        CalendarEventProvider eventProvider = new CalendarEventProvider(EventProviderType.CALENDAR,
+                provider.getContext(), provider.getWidgetId());
+        eventProvider.bindSettings(bound);
+        WidgetEntryVisualizer<? extends WidgetEntry> visualizer = EventProviderType.CALENDAR.getVisualizer(bound);
+
+        AllSettings.addNew(TAG, provider.getContext(),
+                new InstanceSettings(provider.getContext(), provider.getWidgetId(), "Changed"));
+        assertNotSame("Settings of the widget changed", bound,
+                AllSettings.instanceFromId(provider.getContext(), provider.getWidgetId()));
+
+        assertSame(bound, eventProvider.getSettings());
+        List<CalendarEvent> events = eventProvider.queryEvents();
+        assertEquals(events.toString(), 1, events.size());
+        assertSame(bound, events.get(0).getSettings());
+
+        List<? extends WidgetEntry> entries = visualizer.querySortedEventEntries();
+        assertEquals(entries.toString(), 1, entries.size());
+        assertSame(bound, ((CalendarEntry) entries.get(0)).getSettings());
+    }
+
+    private void addEvent(int eventId, String title, DateTime startDate) {
+        CalendarEvent event = new CalendarEvent(getSettings(), provider.getContext(), provider.getWidgetId(), false);
+        event.setEventSource(provider.getFirstActiveEventSource());
+        event.setEventId(eventId);
+        event.setTitle(title);
+        event.setStartDate(startDate);
+        event.setEndDate(startDate.plusHours(1));
+        provider.addRow(event);
+    }
+}
@@ -0,0 +1,72 @@
+package org.andstatus.todoagenda.prefs;
+
+import org.andstatus.todoagenda.BaseWidgetTest;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class AllSettingsTest extends BaseWidgetTest {
+    private static final String TAG = AllSettingsTest.class.getSimpleName();
+
+    @Test
+    public void testPublishedSettingsAreImmutableSnapshots() {
+        int widgetId = provider.getWidgetId();
+        provider.updateAppSettings(TAG);
+        Map<Integer, InstanceSettings> snapshot1 = AllSettings.getLoadedInstances();
+        assertSame(getSettings(), snapshot1.get(widgetId));
+        try {
+            snapshot1.remove(widgetId);
+            fail("Published settings should be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+
+        AllSettings.delete(provider.getContext(), widgetId);
+        Map<Integer, InstanceSettings> snapshot2 = AllSettings.getLoadedInstances();
+        assertFalse("Deleted " + widgetId, snapshot2.containsKey(widgetId));
+        assertSame("The previous snapshot is not changed", getSettings(), snapshot1.get(widgetId));
+
+        provider.updateAppSettings(TAG);
+        assertSame(getSettings(), AllSettings.getLoadedInstances().get(widgetId));
+        assertFalse("The previous snapshot is not changed", snapshot2.containsKey(widgetId));
+    }
+
+    @Test
+    public void testSnapshotsAreReadWhileSettingsChange() throws Exception {
+        int widgetId = provider.getWidgetId();
+        provider.updateAppSettings(TAG);
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> reader = executor.submit(() -> {
+                int reads = 0;
+                while (!done.get()) {
+                    for (InstanceSettings settings : AllSettings.getLoadedInstances().values()) {
+                        if (settings.getWidgetId() == widgetId) reads++;
+                    }
+                }
+                return reads;
+            });
+            for (int ind = 0; ind < 20; ind++) {
+                AllSettings.delete(provider.getContext(), widgetId);
+                provider.updateAppSettings(TAG);
+            }
+            done.set(true);
+            // Throws, if the reader iterated a map, which was being modified
+            reader.get();
+        } finally {
+            done.set(true);
+            executor.shutdown();
+        }
+        assertEquals(getSettings(), AllSettings.instanceFromId(provider.getContext(), widgetId));
+    }
+}
@@ -0,0 +1,60 @@
+package org.andstatus.todoagenda.prefs.colors;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.andstatus.todoagenda.R;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ShadingContextTest {
+    private static final int ATTR_ID = R.attr.eventEntryTitle;
+
+    @Test
+    public void testCachedByBaseContextAndConfiguration() {
+        Context base = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        AtomicInteger resolved = new AtomicInteger();
+
+        ShadingContext dark = ShadingContext.of(base, Shading.DARK);
+        ShadingContext light = ShadingContext.of(base, Shading.LIGHT);
+        assertSame("Cached for the same configuration", dark, ShadingContext.of(base, Shading.DARK));
+        assertSame("Cached for the same configuration", light, ShadingContext.of(base, Shading.LIGHT));
+        assertEquals(0xFF0001, light.getAttrColor(ATTR_ID, attrId -> 0xFF0000 + resolved.incrementAndGet()));
+        assertEquals(0xFF0001, light.getAttrColor(ATTR_ID, attrId -> 0xFF0000 + resolved.incrementAndGet()));
+        assertEquals("Resolved once", 1, resolved.get());
+
+        Configuration configuration = new Configuration(base.getResources().getConfiguration());
+        configuration.fontScale = configuration.fontScale * 2;
+        Context changedBase = base.createConfigurationContext(configuration);
+        ShadingContext changedDark = ShadingContext.of(changedBase, Shading.DARK);
+        assertNotSame("Another base context", dark, changedDark);
+        assertSame(changedDark, ShadingContext.of(changedBase, Shading.DARK));
+        assertSame("Other base contexts don't evict this one", light, ShadingContext.of(base, Shading.LIGHT));
+        assertEquals("Resolved once", 1, resolved.get());
+
+        AtomicReference<Resources> resources = new AtomicReference<>(base.getResources());
+        Context switchingBase = new ContextWrapper(base) {
+            @Override
+            public Resources getResources() {
+                return resources.get();
+            }
+        };
+        ShadingContext switchingLight = ShadingContext.of(switchingBase, Shading.LIGHT);
+        assertSame(switchingLight, ShadingContext.of(switchingBase, Shading.LIGHT));
+        resources.set(changedBase.getResources());
+        ShadingContext switchingLight2 = ShadingContext.of(switchingBase, Shading.LIGHT);
+        assertNotSame("Configuration of the base context changed", switchingLight, switchingLight2);
+        assertEquals(0xFF0002, switchingLight2.getAttrColor(ATTR_ID, attrId -> 0xFF0000 + resolved.incrementAndGet()));
+        assertEquals("Resolved again in the new context", 2, resolved.get());
+    }
+}
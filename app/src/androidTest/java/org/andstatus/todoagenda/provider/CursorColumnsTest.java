@@ -0,0 +1,59 @@
+package org.andstatus.todoagenda.provider;
+
+import android.database.MatrixCursor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CursorColumnsTest {
+    private static final int COLUMN_ID = 0;
+    private static final int COLUMN_TITLE = 1;
+    private static final int COLUMN_DUE = 2;
+    private static final int COLUMN_MISSING = 3;
+
+    @Test
+    public void testIndexesAreResolvedForEachCursor() {
+        CursorColumns columns = new CursorColumns("_id", "title", "due", "missing");
+
+        MatrixCursor cursor1 = new MatrixCursor(new String[]{"title", "due", "_id"});
+        cursor1.addRow(new Object[]{"First", 1000L, 11});
+        cursor1.addRow(new Object[]{"Second", null, 12});
+        assertSame(columns, columns.of(cursor1));
+        assertEquals(2, columns.index(COLUMN_ID));
+        assertEquals(0, columns.index(COLUMN_TITLE));
+        assertEquals(1, columns.index(COLUMN_DUE));
+        assertEquals(-1, columns.index(COLUMN_MISSING));
+
+        assertTrue(cursor1.moveToFirst());
+        assertEquals(11, columns.of(cursor1).getInt(cursor1, COLUMN_ID));
+        assertEquals("First", columns.getString(cursor1, COLUMN_TITLE));
+        assertEquals(1000L, columns.getLong(cursor1, COLUMN_DUE));
+        assertEquals(Long.valueOf(1000L), columns.getPositiveLongOrNull(cursor1, COLUMN_DUE));
+        assertFalse(columns.isNull(cursor1, COLUMN_DUE));
+        assertTrue("A missing column is null", columns.isNull(cursor1, COLUMN_MISSING));
+        assertNull(columns.getPositiveLongOrNull(cursor1, COLUMN_MISSING));
+
+        assertTrue(cursor1.moveToNext());
+        assertEquals(12, columns.of(cursor1).getInt(cursor1, COLUMN_ID));
+        assertEquals("Second", columns.getString(cursor1, COLUMN_TITLE));
+        assertTrue(columns.isNull(cursor1, COLUMN_DUE));
+        assertNull(columns.getPositiveLongOrNull(cursor1, COLUMN_DUE));
+
+        MatrixCursor cursor2 = new MatrixCursor(new String[]{"_id", "missing", "title"});
+        cursor2.addRow(new Object[]{21, -5L, "Other cursor"});
+        assertTrue(cursor2.moveToFirst());
+        columns.of(cursor2);
+        assertEquals(0, columns.index(COLUMN_ID));
+        assertEquals(2, columns.index(COLUMN_TITLE));
+        assertEquals(-1, columns.index(COLUMN_DUE));
+        assertEquals(21, columns.getInt(cursor2, COLUMN_ID));
+        assertEquals("Other cursor", columns.getString(cursor2, COLUMN_TITLE));
+        assertTrue(columns.isNull(cursor2, COLUMN_DUE));
+        assertNull("Not positive", columns.getPositiveLongOrNull(cursor2, COLUMN_MISSING));
+    }
+}
@@ -13,7 +13,6 @@ import org.andstatus.todoagenda.prefs.ApplicationPreferences;
 import org.andstatus.todoagenda.prefs.EventSource;
 import org.andstatus.todoagenda.prefs.InstanceSettings;
 import org.andstatus.todoagenda.prefs.OrderedEventSource;
-import org.andstatus.todoagenda.prefs.SettingsStorage;
 import org.andstatus.todoagenda.prefs.SnapshotMode;
 import org.andstatus.todoagenda.util.RawResourceUtils;
 import org.joda.time.DateTime;
@@ -24,7 +23,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.andstatus.todoagenda.prefs.AllSettings.getStorageKey;
 import static org.andstatus.todoagenda.prefs.InstanceSettings.PREF_WIDGET_ID;
 import static org.andstatus.todoagenda.provider.QueryResultsStorage.KEY_SETTINGS;
 import static org.junit.Assert.fail;
@@ -91,8 +89,7 @@ public class FakeCalendarContentProvider {
         }
         Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
         for(int widgetId : toDelete) {
-            instances.remove(widgetId);
-            SettingsStorage.delete(context, getStorageKey(widgetId));
+            AllSettings.delete(context, widgetId);
         }
         ApplicationPreferences.setWidgetId(context, TEST_WIDGET_ID_MIN);
     }
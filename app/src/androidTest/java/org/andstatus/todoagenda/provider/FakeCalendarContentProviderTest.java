@@ -1,7 +1,10 @@
 package org.andstatus.todoagenda.provider;
 
+import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.net.Uri;
 import android.provider.CalendarContract;
+import android.util.JsonWriter;
 
 import org.andstatus.todoagenda.BaseWidgetTest;
 import org.andstatus.todoagenda.calendar.CalendarEventProvider;
@@ -11,9 +14,17 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
@@ -123,4 +134,130 @@ public class FakeCalendarContentProviderTest extends BaseWidgetTest {
         QueryResultsStorage inputs2 = QueryResultsStorage.fromJson(provider.getWidgetId(), jsonOutput);
         assertEquals(inputs1, inputs2);
     }
+
+    @Test
+    public void testBytesToAndFrom() throws JSONException, IOException {
+        QueryResultsStorage inputs1 = provider.loadResultsAndSettings(
+                org.andstatus.todoagenda.tests.R.raw.birthday);
+        byte[] bytes = inputs1.toBytes(provider.getWidgetId());
+        QueryResultsStorage inputs2 = QueryResultsStorage.fromBytes(provider.getWidgetId(), bytes);
+        assertEquals(inputs1, inputs2);
+
+        int jsonLength = inputs1.toJson(provider.getContext(), provider.getWidgetId(), false).toString().length();
+        assertTrue("Binary " + bytes.length + " should be smaller than JSON " + jsonLength,
+                bytes.length < jsonLength);
+    }
+
+    @Test
+    public void testStreamedJsonToAndFrom() throws JSONException, IOException {
+        QueryResultsStorage inputs1 = provider.loadResultsAndSettings(
+                org.andstatus.todoagenda.tests.R.raw.birthday);
+        provider.addResults(inputs1);
+        provider.updateAppSettings(TAG);
+        StringWriter stringWriter = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(stringWriter)) {
+            inputs1.writeJson(provider.getContext(), provider.getWidgetId(), true, writer);
+        }
+        JSONObject streamed = new JSONObject(stringWriter.toString());
+        JSONObject json = inputs1.toJson(provider.getContext(), provider.getWidgetId(), true);
+        assertEquals(toList(json.keys()), toList(streamed.keys()));
+        assertEquals(json.getJSONObject(QueryResultsStorage.KEY_SETTINGS).toString(),
+                streamed.getJSONObject(QueryResultsStorage.KEY_SETTINGS).toString());
+
+        QueryResultsStorage inputs2 = QueryResultsStorage.fromJson(provider.getWidgetId(), streamed);
+        assertEquals(inputs1, inputs2);
+    }
+
+    private static List<String> toList(Iterator<String> iterator) {
+        List<String> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    @Test
+    public void testLazyFile() throws IOException {
+        QueryResultsStorage inputs1 = provider.loadResultsAndSettings(
+                org.andstatus.todoagenda.tests.R.raw.birthday);
+        File file = new File(provider.getContext().getCacheDir(), TAG + ".bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(inputs1.toBytes(provider.getWidgetId()));
+        }
+        QueryResultsStorage inputs2 = QueryResultsStorage.fromFile(provider.getWidgetId(), file);
+        assertTrue(inputs2.isStoredIn(file));
+        assertEquals(inputs1.getResult(EventProviderType.CALENDAR, 0),
+                inputs2.getResult(EventProviderType.CALENDAR, 0));
+        assertEquals(inputs1.findLast(EventProviderType.CALENDAR), inputs2.findLast(EventProviderType.CALENDAR));
+        assertEquals(inputs1.getExecutedAt(), inputs2.getExecutedAt());
+        assertTrue("Nothing should be loaded yet", inputs2.isStoredIn(file));
+
+        assertEquals(inputs1, inputs2);
+        assertFalse("All results are loaded", inputs2.isStoredIn(file));
+        file.delete();
+    }
+
+    @Test
+    public void testColumnsCursorIsTheSameAsMatrixCursor() {
+        String[] columnNames = {CalendarContract.Instances.EVENT_ID, CalendarContract.Instances.TITLE,
+                CalendarContract.Instances.BEGIN, CalendarContract.Instances.END,
+                CalendarContract.Instances.DISPLAY_COLOR, CalendarContract.Instances.ALL_DAY, "missing_column"};
+        List<QueryRow> rows = new ArrayList<>();
+        rows.add(new QueryRow().setEventId(1L).setTitle("Long and double").setBegin(1000L).setEnd(2.5)
+                .setDisplayColor(0xFF00FF).setAllDay(true));
+        rows.add(new QueryRow().setEventId(2L).setTitle(null).setEnd(3.0).setDisplayColor("red"));
+        rows.add(new QueryRow().setEventId(null).setTitle("No begin").setBegin(Long.MAX_VALUE)
+                .setDisplayColor(null).setAllDay(false));
+        rows.add(new QueryRow());
+
+        MatrixCursor expected = new MatrixCursor(columnNames);
+        for (QueryRow row : rows) {
+            expected.addRow(row.getArray(columnNames));
+        }
+        assertSameCursors(expected, QueryColumns.of(rows).query(columnNames));
+        assertSameCursors(expected, QueryColumns.of(rows.subList(0, 1))
+                .plus(rows.subList(1, rows.size())).query(columnNames));
+
+        MatrixCursor expectedFirst = new MatrixCursor(columnNames);
+        for (QueryRow row : rows.subList(0, 2)) {
+            expectedFirst.addRow(row.getArray(columnNames));
+        }
+        QueryColumns first = QueryColumns.of(rows.subList(0, 2));
+        Cursor firstCursor = first.query(columnNames);
+        first.plus(rows.subList(2, rows.size()));
+        assertSameCursors(expectedFirst, firstCursor);
+        assertSameCursors(expectedFirst, first.query(columnNames));
+        assertSameCursors(expected, first.plus(rows.subList(2, rows.size())).query(columnNames));
+
+        QueryResult result = new QueryResult(EventProviderType.CALENDAR, getSettings(),
+                CalendarContract.Instances.CONTENT_URI, columnNames, "", null, sortOrder);
+        for (QueryRow row : rows.subList(0, 2)) {
+            result.addRow(row);
+        }
+        assertEquals(2, result.query(columnNames).getCount());
+        for (QueryRow row : rows.subList(2, rows.size())) {
+            result.addRow(row);
+        }
+        assertSameCursors(expected, result.query(columnNames));
+    }
+
+    private static void assertSameCursors(Cursor expected, Cursor actual) {
+        assertEquals("Count", expected.getCount(), actual.getCount());
+        assertEquals("Columns", Arrays.asList(expected.getColumnNames()), Arrays.asList(actual.getColumnNames()));
+        for (int rowInd = 0; rowInd < expected.getCount(); rowInd++) {
+            expected.moveToPosition(rowInd);
+            actual.moveToPosition(rowInd);
+            for (int columnInd = 0; columnInd < expected.getColumnCount(); columnInd++) {
+                String message = "row " + rowInd + ", column " + expected.getColumnName(columnInd);
+                int type = expected.getType(columnInd);
+                assertEquals(message, type, actual.getType(columnInd));
+                assertEquals(message, expected.isNull(columnInd), actual.isNull(columnInd));
+                assertEquals(message, expected.getString(columnInd), actual.getString(columnInd));
+                if (type != Cursor.FIELD_TYPE_STRING) {
+                    assertEquals(message, expected.getLong(columnInd), actual.getLong(columnInd));
+                    assertEquals(message, expected.getInt(columnInd), actual.getInt(columnInd));
+                    assertEquals(message, expected.getDouble(columnInd), actual.getDouble(columnInd), 0);
+                }
+            }
+        }
+        actual.close();
+    }
 }
@@ -0,0 +1,90 @@
+package org.andstatus.todoagenda.util;
+
+import org.andstatus.todoagenda.BaseWidgetTest;
+import org.andstatus.todoagenda.EnvironmentChangedReceiver;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MyClockTest extends BaseWidgetTest {
+    /** Daylight saving time started at midnight, so the day started at 01:00 */
+    private static final DateTimeZone ZONE = DateTimeZone.forID("America/Sao_Paulo");
+
+    @Test
+    public void testFrozenDaysAtDstBoundary() {
+        MyClock clock = clockAt(new DateTime(2018, 11, 4, 10, 0, ZONE));
+        long todayEpochDay = clock.todayEpochDay(ZONE);
+        long startOfToday = new DateTime(2018, 11, 4, 1, 0, ZONE).getMillis();
+        long startOfTomorrow = new DateTime(2018, 11, 5, 0, 0, ZONE).getMillis();
+        assertEquals("Start of today", startOfToday, clock.startOfDay(todayEpochDay, ZONE));
+
+        clock.freeze();
+        try {
+            assertDays(clock, todayEpochDay, startOfToday, startOfTomorrow);
+        } finally {
+            clock.unfreeze();
+        }
+        assertDays(clock, todayEpochDay, startOfToday, startOfTomorrow);
+    }
+
+    private static void assertDays(MyClock clock, long todayEpochDay, long startOfToday, long startOfTomorrow) {
+        assertEquals("Today", todayEpochDay, clock.todayEpochDay(ZONE));
+        assertEquals("Start of today", startOfToday, clock.startOfDay(todayEpochDay, ZONE));
+        assertEquals("Start of tomorrow", startOfTomorrow, clock.startOfDay(todayEpochDay + 1, ZONE));
+        assertEquals("Start of yesterday", new DateTime(2018, 11, 3, 0, 0, ZONE).getMillis(),
+                clock.startOfDay(todayEpochDay - 1, ZONE));
+
+        assertFalse("Before the day start", clock.isToday(startOfToday - 1, ZONE));
+        assertTrue("Before the day start", clock.isBeforeToday(startOfToday - 1, ZONE));
+        assertEquals("Before the day start", todayEpochDay - 1, clock.epochDayOf(startOfToday - 1, ZONE));
+        assertTrue("At the day start", clock.isToday(startOfToday, ZONE));
+        assertFalse("At the day start", clock.isBeforeToday(startOfToday, ZONE));
+        assertEquals("At the day start", todayEpochDay, clock.epochDayOf(startOfToday, ZONE));
+        assertTrue("Before tomorrow", clock.isToday(startOfTomorrow - 1, ZONE));
+        assertFalse("Tomorrow", clock.isToday(startOfTomorrow, ZONE));
+        assertTrue("Tomorrow", clock.isAfterToday(new DateTime(startOfTomorrow, ZONE)));
+    }
+
+    @Test
+    public void testEachThreadHasItsOwnSnapshot() throws Exception {
+        MyClock clock = clockAt(new DateTime(2018, 11, 4, 10, 0, ZONE));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        clock.freeze();
+        try {
+            long nowMillis = clock.nowMillis();
+            EnvironmentChangedReceiver.sleep(20);
+            assertEquals("Frozen now", nowMillis, clock.nowMillis());
+
+            clock.freeze();
+            clock.unfreeze();
+            assertEquals("After nested freeze", nowMillis, clock.nowMillis());
+
+            assertNotEquals("Now in other thread", nowMillis,
+                    (long) executor.submit(clock::nowMillis).get());
+            assertEquals("Now in other thread with the snapshot", nowMillis,
+                    (long) executor.submit(clock.withFrozen(clock::nowMillis)).get());
+            assertNotEquals("The snapshot is not left in other thread", nowMillis,
+                    (long) executor.submit(clock::nowMillis).get());
+        } finally {
+            clock.unfreeze();
+            executor.shutdown();
+        }
+    }
+
+    private MyClock clockAt(DateTime now) {
+        ensureNonEmptyResults();
+        provider.setExecutedAt(now);
+        provider.updateAppSettings(MyClockTest.class.getSimpleName());
+        MyClock clock = getSettings().clock();
+        assertEquals("Zone of the clock", ZONE, clock.getZone());
+        return clock;
+    }
+}
@@ -16,16 +16,19 @@ import androidx.annotation.NonNull;
 import org.andstatus.todoagenda.prefs.AllSettings;
 import org.andstatus.todoagenda.prefs.InstanceSettings;
 import org.andstatus.todoagenda.provider.EventProviderType;
+import org.andstatus.todoagenda.provider.QueryResultsCache;
 import org.andstatus.todoagenda.util.DateUtil;
 import org.andstatus.todoagenda.util.PermissionsUtil;
 import org.andstatus.todoagenda.util.StringUtil;
 import org.joda.time.DateTime;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static org.andstatus.todoagenda.AppWidgetProvider.getWidgetIds;
 import static org.andstatus.todoagenda.util.CalendarIntentUtil.newOpenCalendarAtDayIntent;
@@ -119,10 +122,22 @@ public class EnvironmentChangedReceiver extends BroadcastReceiver {
         int widgetId = intent == null
                 ? 0
                 : intent.getIntExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, 0);
+        if (widgetId != 0) {
+            AllSettings.awaitLoaded(context, widgetId);
+        }
         InstanceSettings settings = widgetId == 0
                 ? null
                 : AllSettings.getLoadedInstances().get(widgetId);
         String action0 = intent == null ? "" : intent.getAction();
+        if (Intent.ACTION_PROVIDER_CHANGED.equals(action0) && PermissionsUtil.arePermissionsGranted(context)) {
+            QueryResultsCache.clear();
+            onProviderChanged(context, intent.getData());
+            return;
+        }
+        if (RemoteViewsFactory.ACTION_REFRESH.equals(action0)) {
+            QueryResultsCache.clear();
+            RemoteViewsFactory.onRefreshRequested(widgetId);
+        }
         String action = intent == null || settings == null || StringUtil.isEmpty(action0)
                 ? RemoteViewsFactory.ACTION_REFRESH
                 : action0;
@@ -157,11 +172,39 @@ public class EnvironmentChangedReceiver extends BroadcastReceiver {
                 startActivity(context, configure, action, widgetId, "Open widget Settings");
                 break;
             default:
-                updateAllWidgets(context);
+                if (Intent.ACTION_CONFIGURATION_CHANGED.equals(action0) ||
+                        RemoteViewsFactory.ACTION_PERIODIC_ALARM.equals(action0)) {
+                    RefreshScheduler.get().requestRefresh(context, getWidgetIds(context), goAsync());
+                } else {
+                    updateAllWidgets(context);
+                }
                 break;
         }
     }
 
+    /** Reload only widgets, which show events of the changed provider,
+     *  and re-query only providers of that type for them */
+    private void onProviderChanged(Context context, Uri uri) {
+        List<EventProviderType> types = EventProviderType.fromAuthority(uri == null ? "" : uri.getAuthority());
+        if (types.isEmpty()) {
+            updateAllWidgets(context);
+            return;
+        }
+        List<Integer> existingIds = AppWidgetProvider.asList(getWidgetIds(context));
+        List<Integer> widgetIds = AllSettings.getInstances(context).values().stream()
+                .filter(InstanceSettings::isLiveMode)
+                .filter(settings -> existingIds.contains(settings.getWidgetId()))
+                .filter(settings -> settings.getTypesOfActiveEventProviders().stream().anyMatch(types::contains))
+                .map(InstanceSettings::getWidgetId)
+                .collect(Collectors.toList());
+        Log.d(TAG, "Provider changed: " + types + ", widgets to update:" + widgetIds);
+        for (int widgetId : widgetIds) {
+            RemoteViewsFactory.onProvidersChanged(widgetId, types);
+        }
+        RefreshScheduler.get().requestRefresh(context, widgetIds.stream().mapToInt(Integer::intValue).toArray(),
+                goAsync());
+    }
+
     private void gotoToday(Context context, int widgetId) {
         RemoteViewsFactory factory = RemoteViewsFactory.factories.get(widgetId);
         int position1 = factory == null ? 0 : factory.getTomorrowsPosition();
@@ -219,6 +262,14 @@ public class EnvironmentChangedReceiver extends BroadcastReceiver {
         context.sendBroadcast(intent);
     }
 
+    public static void updateWidgets(Context context, int[] widgetIds) {
+        Intent intent = new Intent(context, AppWidgetProvider.class);
+        intent.setAction(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
+        intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, widgetIds);
+        Log.d(TAG, "updateWidgets:" + AppWidgetProvider.asList(widgetIds) + ", context:" + context);
+        context.sendBroadcast(intent);
+    }
+
     public static void updateAllWidgets(Context context) {
         Intent intent = new Intent(context, AppWidgetProvider.class);
         intent.setAction(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
@@ -0,0 +1,112 @@
+package org.andstatus.todoagenda;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.andstatus.todoagenda.util.LazyVal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces bursts of refresh requests (e.g. caused by a calendar sync) into a single update of each widget.
+ * The first request opens a window, all widgets requested during the window are updated once at its end.
+ * Broadcasts that requested a refresh are kept pending (see {@link BroadcastReceiver#goAsync()}) till the end
+ * of the window, so the process is not killed before the refresh, and the window is bounded accordingly.
+ */
+public class RefreshScheduler {
+    private static final String TAG = RefreshScheduler.class.getSimpleName();
+    public static final long DEFAULT_WINDOW_MILLIS = 2000;
+    /** Well below the time limit of a broadcast receiver */
+    public static final long MAX_WINDOW_MILLIS = 5000;
+    private static final RefreshScheduler instance = new RefreshScheduler(DEFAULT_WINDOW_MILLIS);
+    private static final LazyVal<Handler> handler = LazyVal.of(() -> new Handler(Looper.getMainLooper()));
+
+    private final long windowMillis;
+    private final Set<Integer> pendingWidgetIds = ConcurrentHashMap.newKeySet();
+    private final Queue<BroadcastReceiver.PendingResult> pendingResults = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong executed = new AtomicLong();
+
+    /** @param windowMillis Length of the window, during which refresh requests are coalesced.
+     *                     Zero or negative - no delay. Limited by {@link #MAX_WINDOW_MILLIS} */
+    RefreshScheduler(long windowMillis) {
+        this.windowMillis = Math.min(windowMillis, MAX_WINDOW_MILLIS);
+    }
+
+    /** The scheduler of the application */
+    public static RefreshScheduler get() {
+        return instance;
+    }
+
+    /** @param pendingResult of the broadcast, which requested the refresh. It is finished after the refresh */
+    public void requestRefresh(Context context, int[] widgetIds,
+                               @Nullable BroadcastReceiver.PendingResult pendingResult) {
+        if (widgetIds == null || widgetIds.length == 0) {
+            if (pendingResult != null) pendingResult.finish();
+            return;
+        }
+
+        requested.addAndGet(widgetIds.length);
+        for (int widgetId : widgetIds) {
+            pendingWidgetIds.add(widgetId);
+        }
+        if (pendingResult != null) pendingResults.add(pendingResult);
+        if (windowMillis <= 0) {
+            execute(context);
+        } else if (scheduled.compareAndSet(false, true)) {
+            Context appContext = context.getApplicationContext();
+            handler.get().postDelayed(() -> execute(appContext), windowMillis);
+        }
+    }
+
+    private void execute(Context context) {
+        scheduled.set(false);
+        List<Integer> ids = new ArrayList<>();
+        for (Iterator<Integer> iterator = pendingWidgetIds.iterator(); iterator.hasNext(); ) {
+            ids.add(iterator.next());
+            iterator.remove();
+        }
+        if (!ids.isEmpty()) {
+            int[] widgetIds = ids.stream().mapToInt(Integer::intValue).toArray();
+            executed.addAndGet(widgetIds.length);
+            Log.d(TAG, "Refreshing " + AppWidgetProvider.asList(widgetIds) + "; " + getStats());
+            EnvironmentChangedReceiver.updateWidgets(context, widgetIds);
+        }
+        BroadcastReceiver.PendingResult pendingResult;
+        while ((pendingResult = pendingResults.poll()) != null) {
+            pendingResult.finish();
+        }
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /** Number of widget refreshes requested */
+    public long getRequested() {
+        return requested.get();
+    }
+
+    /** Number of widget refreshes actually executed */
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    public String getStats() {
+        return "refreshes requested:" + requested.get() + ", executed:" + executed.get();
+    }
+}
@@ -18,11 +18,12 @@ import org.andstatus.todoagenda.prefs.InstanceSettings;
 import org.andstatus.todoagenda.prefs.OrderedEventSource;
 import org.andstatus.todoagenda.prefs.colors.BackgroundColorPref;
 import org.andstatus.todoagenda.prefs.colors.TextColorPref;
-import org.andstatus.todoagenda.prefs.colors.Shading;
 import org.andstatus.todoagenda.provider.EventProviderType;
 import org.andstatus.todoagenda.util.InstanceId;
+import org.andstatus.todoagenda.util.IteratorUtil;
 import org.andstatus.todoagenda.util.MyClock;
 import org.andstatus.todoagenda.util.StringUtil;
+import org.andstatus.todoagenda.util.WidgetStyle;
 import org.andstatus.todoagenda.widget.DayHeader;
 import org.andstatus.todoagenda.widget.DayHeaderVisualizer;
 import org.andstatus.todoagenda.widget.LastEntry;
@@ -34,11 +35,30 @@ import org.andstatus.todoagenda.widget.WidgetHeaderLayout;
 import org.joda.time.DateTime;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static org.andstatus.todoagenda.util.RemoteViewsUtil.setAlpha;
 import static org.andstatus.todoagenda.util.RemoteViewsUtil.setBackgroundColor;
@@ -70,23 +90,69 @@ public class RemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
     static final String ACTION_MIDNIGHT_ALARM = PACKAGE + ".action.MIDNIGHT_ALARM";
     static final String ACTION_PERIODIC_ALARM = PACKAGE + ".action.PERIODIC_ALARM";
 
+    private static final int QUERY_THREADS = 4;
+    private static final long QUERY_TIMEOUT_SECONDS = 30;
+    /** Providers of a widget are queried in parallel. The pool is shared by all widgets */
+    private static final ExecutorService queryExecutor = newQueryExecutor();
+
     public final long instanceId = InstanceId.next();
     public final Context context;
     private final int widgetId;
     public final boolean createdByLauncher;
 
     private volatile List<WidgetEntry> widgetEntries = new ArrayList<>();
+    /** Stable ids of the widgetEntries, unique in the list */
+    private volatile long[] itemIds = new long[0];
     private volatile List<WidgetEntryVisualizer<? extends WidgetEntry>> visualizers = new ArrayList<>();
 
+    /** Event entries of the last reload by provider type. Used for incremental reloads */
+    private volatile Map<EventProviderType, List<? extends WidgetEntry>> eventEntries = Collections.emptyMap();
+    private volatile InstanceSettings reloadedWith = null;
+    private volatile DateTime reloadedAt = MyClock.DATETIME_MIN;
+    /** If not null, the next reload needs to re-query only providers of these types */
+    private final AtomicReference<Set<EventProviderType>> changedTypes = new AtomicReference<>();
+
+    /** Views of the shown entries by entry fingerprints. Valid for the same style, day and theme only.
+     * The style is replaced, when settings or the configuration (locale, font scale etc.) change */
+    private final Map<Object, CachedViews> viewsCache = new ConcurrentHashMap<>();
+    private volatile WidgetStyle viewsCachedFor = null;
+    private volatile long viewsCachedDay = 0;
+    private volatile boolean viewsCachedDark = false;
+
+    private static class CachedViews {
+        final WidgetEntry entry;
+        final boolean atFirstPosition;
+        final RemoteViews views;
+
+        CachedViews(WidgetEntry entry, boolean atFirstPosition, RemoteViews views) {
+            this.entry = entry;
+            this.atFirstPosition = atFirstPosition;
+            this.views = views;
+        }
+    }
+
     public RemoteViewsFactory(Context context, int widgetId, boolean createdByLauncher) {
         this.context = context;
         this.widgetId = widgetId;
         this.createdByLauncher = createdByLauncher;
-        visualizers.add(new LastEntryVisualizer(context, widgetId));
-        widgetEntries.add(new LastEntry(getSettings(), NOT_LOADED, getSettings().clock().now()));
+        InstanceSettings settings = getSettings();
+        visualizers.add(new LastEntryVisualizer(settings));
+        widgetEntries.add(new LastEntry(settings, NOT_LOADED, settings.clock().now()));
         logEvent("Init" + (createdByLauncher ? " by Launcher" : ""));
     }
 
+    private static ExecutorService newQueryExecutor() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(QUERY_THREADS, QUERY_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, TAG + "-query-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private void logEvent(String message) {
         Log.d(TAG, widgetId + " instance:" + instanceId + " " + message);
     }
@@ -111,10 +177,18 @@ public class RemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
     public RemoteViews getViewAt(int position) {
         if (position < widgetEntries.size()) {
             WidgetEntry entry = widgetEntries.get(position);
+            CachedViews cached = viewsCache.get(entry.getFingerprint());
+            if (cached != null && cached.entry == entry && cached.atFirstPosition == (position == 0)) {
+                if (position == widgetEntries.size() - 1) {
+                    InstanceState.listRedrawn(widgetId);
+                }
+                return cached.views;
+            }
             WidgetEntryVisualizer<? extends WidgetEntry> visualizer = visualizerFor(entry);
             if (visualizer != null) {
                 RemoteViews views = visualizer.getRemoteViews(entry, position);
                 views.setOnClickFillInIntent(R.id.event_entry, entry.newOnClickFillInIntent());
+                viewsCache.put(entry.getFingerprint(), new CachedViews(entry, position == 0, views));
                 if (position == widgetEntries.size() - 1) {
                     InstanceState.listRedrawn(widgetId);
                 }
@@ -142,7 +216,7 @@ public class RemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
         if (factory == null) return null;
 
         WidgetEntry entry = factory.getWidgetEntries().stream()
-            .filter(we -> we.entryId == entryId)
+            .filter(we -> we.getEntryId() == entryId)
             .findFirst().orElse(null);
         factory.logEvent("Clicked entryId:" + entryId + ", entry: " + entry);
         if (entry == null) return null;
@@ -165,10 +239,111 @@ public class RemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
     }
 
     private void reload() {
-        visualizers = getVisualizers();
-        this.widgetEntries = queryWidgetEntries(getSettings());
+        Set<EventProviderType> changed = changedTypes.getAndSet(null);
+        InstanceSettings settings = getSettings();
+        boolean incremental;
+        // All entries of the reload, including these queried in other threads, are checked against the same "now"
+        settings.clock().freeze();
+        try {
+            incremental = changed != null && settings == reloadedWith && settings.clock().isToday(reloadedAt);
+            visualizers = getVisualizers(settings);
+            List<WidgetEntry> entries = reuseCachedEntries(settings, queryWidgetEntries(settings,
+                    incremental ? changed : null));
+            itemIds = toItemIds(entries);
+            this.widgetEntries = entries;
+            reloadedWith = settings;
+            reloadedAt = settings.clock().now();
+        } finally {
+            settings.clock().unfreeze();
+        }
         InstanceState.listReloaded(widgetId);
-        logEvent("reload, visualizers:" + visualizers.size() + ", entries:" + this.widgetEntries.size());
+        logEvent("reload" + (incremental ? " of " + changed : "") +
+                ", visualizers:" + visualizers.size() + ", entries:" + this.widgetEntries.size());
+    }
+
+    /** Entry ids as item ids, which have to be unique in a list.
+     *  Repeated entries get ids derived from the entry id and the number of the repetition only,
+     *  and these never take natural ids of other entries, so ids don't depend on positions of entries */
+    static long[] toItemIds(List<? extends WidgetEntry> entries) {
+        long[] ids = new long[entries.size()];
+        Set<Long> naturalIds = new HashSet<>();
+        for (WidgetEntry entry : entries) {
+            naturalIds.add(entry.getEntryId());
+        }
+        Map<Long, Integer> repetitions = new HashMap<>();
+        Set<Long> usedIds = new HashSet<>();
+        for (int ind = 0; ind < ids.length; ind++) {
+            long entryId = entries.get(ind).getEntryId();
+            int repetition = repetitions.merge(entryId, 1, Integer::sum) - 1;
+            long id = entryId;
+            if (repetition > 0) {
+                int salt = repetition;
+                do {
+                    id = mixIds(entryId, salt++);
+                } while (id == 0 || naturalIds.contains(id) || usedIds.contains(id));
+            }
+            usedIds.add(id);
+            ids[ind] = id;
+        }
+        return ids;
+    }
+
+    /** Finalizer of the 64-bit MurmurHash3 */
+    private static long mixIds(long id, int salt) {
+        long hash = id ^ (salt * 0x9e3779b97f4a7c15L);
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /** Replaces entries with equal entries of the previous reload, so that views of unchanged entries
+     *  are taken from the cache. Views of other entries are removed from the cache */
+    private List<WidgetEntry> reuseCachedEntries(InstanceSettings settings, List<WidgetEntry> entries) {
+        WidgetStyle style = WidgetStyle.of(settings);
+        long today = settings.clock().now().withTimeAtStartOfDay().getMillis();
+        boolean darkTheme = InstanceSettings.isDarkThemeOn(context);
+        if (style != viewsCachedFor || today != viewsCachedDay || darkTheme != viewsCachedDark) {
+            viewsCache.clear();
+            viewsCachedFor = style;
+            viewsCachedDay = today;
+            viewsCachedDark = darkTheme;
+            return entries;
+        }
+        Set<Object> fingerprints = new HashSet<>();
+        List<WidgetEntry> reused = new ArrayList<>(entries.size());
+        for (WidgetEntry entry : entries) {
+            CachedViews cached = viewsCache.get(entry.getFingerprint());
+            reused.add(cached == null ? entry : cached.entry);
+            fingerprints.add(entry.getFingerprint());
+        }
+        viewsCache.keySet().retainAll(fingerprints);
+        return reused;
+    }
+
+    /** The next reload of this widget may re-query only providers of the changed types,
+     *  reusing entries of other providers from the previous reload */
+    static void onProvidersChanged(int widgetId, Collection<EventProviderType> types) {
+        RemoteViewsFactory factory = factories.get(widgetId);
+        if (factory == null) return;
+
+        factory.changedTypes.getAndUpdate(prev -> {
+            Set<EventProviderType> set = prev == null ? new HashSet<>() : new HashSet<>(prev);
+            set.addAll(types);
+            return set;
+        });
+    }
+
+    /** A refresh, requested by a user, reloads all providers
+     * @param widgetId if 0, refresh of all widgets is requested */
+    static void onRefreshRequested(int widgetId) {
+        if (widgetId == 0) {
+            factories.values().forEach(factory -> factory.changedTypes.set(null));
+        } else {
+            RemoteViewsFactory factory = factories.get(widgetId);
+            if (factory != null) {
+                factory.changedTypes.set(null);
+            }
+        }
     }
 
     static void updateWidget(Context context, int widgetId) {
@@ -191,16 +366,15 @@ public class RemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
         }
     }
 
-    private List<WidgetEntryVisualizer<? extends WidgetEntry>> getVisualizers() {
+    /** All visualizers and their providers use the same settings and style during a reload */
+    private List<WidgetEntryVisualizer<? extends WidgetEntry>> getVisualizers(InstanceSettings settings) {
+        WidgetStyle style = WidgetStyle.of(settings);
         List<WidgetEntryVisualizer<? extends WidgetEntry>> visualizers = new ArrayList<>();
-        DayHeaderVisualizer dayHeaderVisualizer = new DayHeaderVisualizer(
-                getSettings().getContext(),
-                widgetId);
-        visualizers.add(dayHeaderVisualizer);
-        for (EventProviderType type : getSettings().getTypesOfActiveEventProviders()) {
-            visualizers.add(type.getVisualizer(getSettings().getContext(), widgetId));
-        }
-        visualizers.add(new LastEntryVisualizer(context, widgetId));
+        visualizers.add(new DayHeaderVisualizer(settings).withStyle(style));
+        for (EventProviderType type : settings.getTypesOfActiveEventProviders()) {
+            visualizers.add(type.getVisualizer(settings).withStyle(style));
+        }
+        visualizers.add(new LastEntryVisualizer(settings).withStyle(style));
         return visualizers;
     }
 
@@ -218,74 +392,210 @@ public class RemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
         return getWidgetEntries().size() > 0 ? 0 : -1;
     }
 
-    private List<WidgetEntry> queryWidgetEntries(InstanceSettings settings) {
-        List<WidgetEntry> eventEntries = new ArrayList<>();
+    /**
+     * @param changed if not null, only providers of these types are re-queried. Entries of other providers
+     *                are reused, unless their time sections might have changed since the previous reload
+     */
+    private List<WidgetEntry> queryWidgetEntries(InstanceSettings settings, Set<EventProviderType> changed) {
+        Map<EventProviderType, List<? extends WidgetEntry>> previousEntries = this.eventEntries;
+        Map<EventProviderType, Callable<List<? extends WidgetEntry>>> queries = new HashMap<>();
+        long previousMillis = reloadedAt.getMillis();
+        long nowMillis = settings.clock().now().getMillis();
+        for (WidgetEntryVisualizer<?> visualizer : visualizers) {
+            EventProviderType type = visualizer.getProviderType();
+            if (changed == null || changed.contains(type) || !previousEntries.containsKey(type)
+                    || hasTimeBoundaryBetween(previousEntries.get(type), previousMillis, nowMillis)) {
+                queries.put(type, settings.clock().withFrozen(visualizer::querySortedEventEntries));
+            }
+        }
+        Map<EventProviderType, List<? extends WidgetEntry>> results = queryInParallel(widgetId, queries,
+                TimeUnit.SECONDS.toMillis(QUERY_TIMEOUT_SECONDS), previousEntries);
+        Map<EventProviderType, List<? extends WidgetEntry>> newEntries = new HashMap<>();
+        List<List<? extends WidgetEntry>> sortedLists = new ArrayList<>();
         for (WidgetEntryVisualizer<?> visualizer : visualizers) {
-            eventEntries.addAll(visualizer.queryEventEntries());
+            EventProviderType type = visualizer.getProviderType();
+            List<? extends WidgetEntry> entries = results.containsKey(type)
+                ? results.get(type)
+                : previousEntries.get(type);
+            newEntries.put(type, entries);
+            sortedLists.add(entries);
         }
-        Collections.sort(eventEntries);
-        List<WidgetEntry> noHidden = eventEntries.stream().filter(WidgetEntry::notHidden).collect(Collectors.toList());
-        List<WidgetEntry> deduplicated = settings.getHideDuplicates() ? filterOutDuplicates(noHidden) : noHidden;
-        List<WidgetEntry> widgetEntries = settings.getShowDayHeaders() ? addDayHeaders(deduplicated) : deduplicated;
+        this.eventEntries = newEntries;
+        // Stages are lazy, so only the resulting list is allocated
+        Iterator<WidgetEntry> entries = IteratorUtil.filter(mergeSorted(sortedLists), WidgetEntry::notHidden);
+        if (settings.getHideDuplicates()) {
+            entries = IteratorUtil.filter(entries, newDuplicatesFilter());
+        }
+        if (settings.getShowDayHeaders()) {
+            entries = IteratorUtil.flatMap(entries, new DayHeadersInserter(settings));
+        }
+        List<WidgetEntry> widgetEntries = IteratorUtil.toList(entries);
         LastEntry.addLast(settings, widgetEntries);
         return widgetEntries;
     }
 
-    private List<WidgetEntry> filterOutDuplicates(List<WidgetEntry> inputEntries) {
-        List<WidgetEntry> deduplicated = new ArrayList<>();
-        List<WidgetEntry> hidden = new ArrayList<>();
-        for(int ind1 = 0; ind1 < inputEntries.size(); ind1++) {
-            WidgetEntry inputEntry = inputEntries.get(ind1);
-            if (!hidden.contains(inputEntry)) {
-                deduplicated.add(inputEntry);
-                for(int ind2 = ind1 + 1; ind2 < inputEntries.size(); ind2++) {
-                    WidgetEntry entry2 = inputEntries.get(ind2);
-                    if (!hidden.contains(entry2) && inputEntry.duplicates(entry2)) {
-                        hidden.add(entry2);
-                    }
+    /** @return true if any of the entries starts or ends after fromMillis and not later than toMillis,
+     *  so its time section might have changed between these moments */
+    static boolean hasTimeBoundaryBetween(List<? extends WidgetEntry> entries, long fromMillis, long toMillis) {
+        for (WidgetEntry entry : entries) {
+            if (entry.entryMillis > fromMillis && entry.entryMillis <= toMillis) return true;
+
+            DateTime endDate = entry.getEndDate();
+            if (endDate != null && endDate.getMillis() > fromMillis && endDate.getMillis() <= toMillis) return true;
+        }
+        return false;
+    }
+
+    /** Lazy K-way merge of sorted lists. Equal entries keep the order of the lists, as in a stable sort */
+    static Iterator<WidgetEntry> mergeSorted(List<List<? extends WidgetEntry>> sortedLists) {
+        PriorityQueue<MergeCursor> queue = new PriorityQueue<>(Math.max(sortedLists.size(), 1));
+        for (int ind = 0; ind < sortedLists.size(); ind++) {
+            if (!sortedLists.get(ind).isEmpty()) {
+                queue.add(new MergeCursor(sortedLists.get(ind), ind));
+            }
+        }
+        return new Iterator<WidgetEntry>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public WidgetEntry next() {
+                MergeCursor cursor = queue.poll();
+                if (cursor == null) throw new NoSuchElementException();
+
+                WidgetEntry entry = cursor.current();
+                if (cursor.moveToNext()) {
+                    queue.add(cursor);
                 }
+                return entry;
             }
+        };
+    }
+
+    private static class MergeCursor implements Comparable<MergeCursor> {
+        private final List<? extends WidgetEntry> list;
+        private final int listIndex;
+        private int position = 0;
+
+        MergeCursor(List<? extends WidgetEntry> list, int listIndex) {
+            this.list = list;
+            this.listIndex = listIndex;
         }
-        return deduplicated;
-    }
-
-    private List<WidgetEntry> addDayHeaders(List<WidgetEntry> listIn) {
-        List<WidgetEntry> listOut = new ArrayList<>();
-        if (!listIn.isEmpty()) {
-            InstanceSettings settings = getSettings();
-            DayHeader curDayBucket = new DayHeader(settings, DAY_HEADER, MyClock.DATETIME_MIN);
-            boolean pastEventsHeaderAdded = false;
-            boolean endOfListHeaderAdded = false;
-            for (WidgetEntry entry : listIn) {
-                DateTime nextEntryDay = entry.entryDay;
-                switch (entry.entryPosition) {
-                    case PAST_AND_DUE:
-                        if(!pastEventsHeaderAdded) {
-                            curDayBucket = new DayHeader(settings, PAST_AND_DUE_HEADER, MyClock.DATETIME_MIN);
-                            listOut.add(curDayBucket);
-                            pastEventsHeaderAdded = true;
-                        }
-                        break;
-                    case END_OF_LIST:
-                        if (!endOfListHeaderAdded) {
-                            endOfListHeaderAdded = true;
-                            curDayBucket = new DayHeader(settings, END_OF_LIST_HEADER, MyClock.DATETIME_MAX);
-                            listOut.add(curDayBucket);
-                        }
-                        break;
-                    default:
-                        if (!nextEntryDay.isEqual(curDayBucket.entryDay)) {
-                            if (settings.getShowDaysWithoutEvents()) {
-                                addEmptyDayHeadersBetweenTwoDays(listOut, curDayBucket.entryDay, nextEntryDay);
-                            }
-                            curDayBucket = new DayHeader(settings, DAY_HEADER, nextEntryDay);
-                            listOut.add(curDayBucket);
+
+        WidgetEntry current() {
+            return list.get(position);
+        }
+
+        boolean moveToNext() {
+            return ++position < list.size();
+        }
+
+        @Override
+        public int compareTo(MergeCursor other) {
+            int signum = current().compareTo(other.current());
+            return signum == 0
+                    ? Integer.compare(listIndex, other.listIndex)
+                    : signum;
+        }
+    }
+
+    /** Runs the queries in parallel and waits for all of them, but not longer than the timeout.
+     *  @return entries of each of the queries */
+    static Map<EventProviderType, List<? extends WidgetEntry>> queryInParallel(int widgetId,
+            Map<EventProviderType, Callable<List<? extends WidgetEntry>>> queries, long timeoutMillis,
+            Map<EventProviderType, List<? extends WidgetEntry>> previousEntries) {
+        Map<EventProviderType, Future<List<? extends WidgetEntry>>> futures = new HashMap<>();
+        for (Map.Entry<EventProviderType, Callable<List<? extends WidgetEntry>>> entry : queries.entrySet()) {
+            futures.put(entry.getKey(), queryExecutor.submit(entry.getValue()));
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        Map<EventProviderType, List<? extends WidgetEntry>> results = new HashMap<>();
+        for (Map.Entry<EventProviderType, Future<List<? extends WidgetEntry>>> entry : futures.entrySet()) {
+            results.put(entry.getKey(), getQueryResult(widgetId, entry.getKey(), entry.getValue(), deadline,
+                    previousEntries));
+        }
+        return results;
+    }
+
+    /** Waits for the query till the deadline. If the provider failed or is too slow,
+     *  its entries of the previous reload are shown */
+    private static List<? extends WidgetEntry> getQueryResult(int widgetId, EventProviderType type,
+                                                       Future<List<? extends WidgetEntry>> query, long deadline,
+                                                       Map<EventProviderType, List<? extends WidgetEntry>> previousEntries) {
+        try {
+            return query.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            query.cancel(true);
+            Log.d(TAG, widgetId + " Timeout querying " + type);
+        } catch (InterruptedException e) {
+            query.cancel(true);
+            Thread.currentThread().interrupt();
+            Log.d(TAG, widgetId + " Interrupted querying " + type);
+        } catch (ExecutionException e) {
+            Log.w(TAG, widgetId + " Failed querying " + type, e.getCause());
+        }
+        return previousEntries.getOrDefault(type, Collections.emptyList());
+    }
+
+    /** Keeps the first of duplicated entries. Linear, as duplicates are found by a hash of their key */
+    static List<WidgetEntry> filterOutDuplicates(List<WidgetEntry> inputEntries) {
+        return IteratorUtil.toList(IteratorUtil.filter(inputEntries.iterator(), newDuplicatesFilter()));
+    }
+
+    /** Stateful: true for the first entry with a key only */
+    private static Predicate<WidgetEntry> newDuplicatesFilter() {
+        Set<Object> keys = new HashSet<>();
+        return entry -> keys.add(entry.duplicatesKey());
+    }
+
+    /** Prepends day headers to the first entry of each day */
+    private class DayHeadersInserter implements Function<WidgetEntry, Iterator<WidgetEntry>> {
+        private final InstanceSettings settings;
+        /** Reused for each entry, see {@link IteratorUtil#flatMap(Iterator, Function)} */
+        private final List<WidgetEntry> listOut = new ArrayList<>();
+        private DayHeader curDayBucket;
+        private boolean pastEventsHeaderAdded = false;
+        private boolean endOfListHeaderAdded = false;
+
+        DayHeadersInserter(InstanceSettings settings) {
+            this.settings = settings;
+            curDayBucket = new DayHeader(settings, DAY_HEADER, MyClock.DATETIME_MIN);
+        }
+
+        @Override
+        public Iterator<WidgetEntry> apply(WidgetEntry entry) {
+            listOut.clear();
+            switch (entry.entryPosition) {
+                case PAST_AND_DUE:
+                    if(!pastEventsHeaderAdded) {
+                        curDayBucket = new DayHeader(settings, PAST_AND_DUE_HEADER, MyClock.DATETIME_MIN);
+                        listOut.add(curDayBucket);
+                        pastEventsHeaderAdded = true;
+                    }
+                    break;
+                case END_OF_LIST:
+                    if (!endOfListHeaderAdded) {
+                        endOfListHeaderAdded = true;
+                        curDayBucket = new DayHeader(settings, END_OF_LIST_HEADER, MyClock.DATETIME_MAX);
+                        listOut.add(curDayBucket);
+                    }
+                    break;
+                default:
+                    if (entry.getEntryDayMillis() != curDayBucket.getEntryDayMillis()) {
+                        DateTime nextEntryDay = entry.getEntryDay();
+                        if (settings.getShowDaysWithoutEvents()) {
+                            addEmptyDayHeadersBetweenTwoDays(settings, listOut, curDayBucket.getEntryDay(),
+                                    nextEntryDay);
                         }
-                }
-                listOut.add(entry);
+                        curDayBucket = new DayHeader(settings, DAY_HEADER, nextEntryDay);
+                        listOut.add(curDayBucket);
+                    }
             }
+            listOut.add(entry);
+            return listOut.iterator();
         }
-        return listOut;
     }
 
     public void logWidgetEntries(String tag) {
@@ -300,14 +610,15 @@ public class RemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
         return widgetEntries;
     }
 
-    private void addEmptyDayHeadersBetweenTwoDays(List<WidgetEntry> entries, DateTime fromDayExclusive, DateTime toDayExclusive) {
+    private static void addEmptyDayHeadersBetweenTwoDays(InstanceSettings settings, List<WidgetEntry> entries,
+                                                         DateTime fromDayExclusive, DateTime toDayExclusive) {
         DateTime emptyDay = fromDayExclusive.plusDays(1);
-        DateTime today = getSettings().clock().now().withTimeAtStartOfDay();
+        DateTime today = settings.clock().now().withTimeAtStartOfDay();
         if (emptyDay.isBefore(today)) {
             emptyDay = today;
         }
         while (emptyDay.isBefore(toDayExclusive)) {
-            entries.add(new DayHeader(getSettings(), DAY_HEADER, emptyDay));
+            entries.add(new DayHeader(settings, DAY_HEADER, emptyDay));
             emptyDay = emptyDay.plusDays(1);
         }
     }
@@ -323,15 +634,17 @@ public class RemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
     }
 
     public long getItemId(int position) {
-        logEvent("getItemId: " + position);
-        if (position < widgetEntries.size()) {
-            return position + 1;
+        long[] ids = itemIds;
+        if (position < ids.length) {
+            return ids[position];
         }
+        logEvent("no item id at:" + position + ", size:" + ids.length);
         return 0;
     }
 
+    /** Ids are derived from identities of entries, see {@link WidgetEntry#getEntryId()} */
     public boolean hasStableIds() {
-        return false;
+        return true;
     }
 
     private static void configureWidgetHeader(InstanceSettings settings, RemoteViews rv) {
@@ -362,8 +675,9 @@ public class RemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
                 .formatDate(settings.clock().now()).toString()
                 .toUpperCase(Locale.getDefault());
         rv.setTextViewText(viewId, StringUtil.isEmpty(formattedDate) ? "                    " : formattedDate);
-        setTextSize(settings, rv, viewId, R.dimen.widget_header_title);
-        setTextColor(settings, TextColorPref.WIDGET_HEADER, rv, viewId, R.attr.header);
+        WidgetStyle style = WidgetStyle.of(settings);
+        setTextSize(style, rv, viewId, R.dimen.widget_header_title);
+        setTextColor(style, TextColorPref.WIDGET_HEADER, rv, viewId, R.attr.header);
     }
 
     private static void setActionIcons(InstanceSettings settings, RemoteViews rv) {
@@ -373,11 +687,7 @@ public class RemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
         setImageFromAttr(themeContext, rv, R.id.add_task, R.attr.header_action_add_task);
         setImageFromAttr(themeContext, rv, R.id.refresh, R.attr.header_action_refresh);
         setImageFromAttr(themeContext, rv, R.id.overflow_menu, R.attr.header_action_overflow);
-        Shading shading = settings.colors().getShading(TextColorPref.WIDGET_HEADER);
-        int alpha = 255;
-        if (shading == Shading.DARK || shading == Shading.LIGHT) {
-            alpha = 154;
-        }
+        int alpha = WidgetStyle.of(settings).getActionIconAlpha();
         setAlpha(rv, R.id.go_to_today, alpha);
         setAlpha(rv, R.id.add_event, alpha);
         setAlpha(rv, R.id.add_task, alpha);
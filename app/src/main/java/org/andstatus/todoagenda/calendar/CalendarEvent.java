@@ -1,15 +1,15 @@
 package org.andstatus.todoagenda.calendar;
 
 import android.content.Context;
-import android.util.Log;
 
-import org.andstatus.todoagenda.prefs.AllSettings;
 import org.andstatus.todoagenda.prefs.InstanceSettings;
 import org.andstatus.todoagenda.prefs.OrderedEventSource;
+import org.andstatus.todoagenda.util.AllDayMillisConverter;
+import org.andstatus.todoagenda.util.MyClock;
 import org.andstatus.todoagenda.widget.WidgetEvent;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
 import org.joda.time.DateTimeZone;
-import org.joda.time.LocalDateTime;
 
 import java.util.Optional;
 
@@ -26,7 +26,12 @@ public class CalendarEvent implements WidgetEvent {
     private OrderedEventSource eventSource;
     private int eventId;
     private String title = "";
+    /** Epoch millis of the start and the end. Dates are created lazily in their time zones */
+    private long startMillis;
+    private DateTimeZone startZone;
     private DateTime startDate;
+    private long endMillis;
+    private DateTimeZone endZone;
     private DateTime endDate;
     private int color;
     private Optional<Integer> calendarColor = Optional.empty();
@@ -52,62 +57,52 @@ public class CalendarEvent implements WidgetEvent {
     }
 
     public DateTime getStartDate() {
+        if (startDate == null && startZone != null) {
+            startDate = new DateTime(startMillis, startZone);
+        }
         return startDate;
     }
 
     public CalendarEvent setStartDate(DateTime startDate) {
-        this.startDate = allDay ? startDate.withTimeAtStartOfDay() : startDate;
+        setStart(allDay ? startDate.withTimeAtStartOfDay() : startDate);
         fixEndDate();
         return this;
     }
 
+    private void setStart(DateTime date) {
+        startDate = date;
+        startMillis = date.getMillis();
+        startZone = date.getZone();
+    }
+
     public void setStartMillis(long startMillis) {
-        this.startDate = dateFromMillis(startMillis);
+        startDate = null;
+        startZone = getSettings().clock().getZone();
+        this.startMillis = allDay
+                ? AllDayMillisConverter.forZone(startZone).toStartOfDay(startMillis)
+                : startMillis;
         fixEndDate();
     }
 
+    /** For all day events these are millis of the start date in UTC, as in the Calendar provider */
     public long getStartMillis() {
-        return dateToMillis(startDate);
-    }
-
-    private DateTime dateFromMillis(long millis) {
-        return allDay ? fromAllDayMillis(millis) : new DateTime(millis, getSettings().clock().getZone());
-    }
-
-    private static volatile long fixTimeOfAllDayEventLoggedAt = 0;
-    /**
-     * Implemented based on this answer: http://stackoverflow.com/a/5451245/297710
-     */
-    private DateTime fromAllDayMillis(long millis) {
-        String msgLog = "millis=" + millis;
-        DateTime fixed;
-        try {
-            DateTime utcDate = new DateTime(millis, DateTimeZone.UTC);
-            LocalDateTime ldt = new LocalDateTime()
-                    .withYear(utcDate.getYear())
-                    .withMonthOfYear(utcDate.getMonthOfYear())
-                    .withDayOfMonth(utcDate.getDayOfMonth())
-                    .withMillisOfDay(0);
-            int hour = 0;
-            while (getSettings().clock().getZone().isLocalDateTimeGap(ldt)) {
-                Log.v("fixTimeOfAllDayEvent", "Local Date Time Gap: " + ldt + "; " + msgLog);
-                ldt = ldt.withHourOfDay(++hour);
-            }
-            fixed = ldt.toDateTime(getSettings().clock().getZone());
-            msgLog += " -> " + fixed;
-            if (Math.abs(System.currentTimeMillis() - fixTimeOfAllDayEventLoggedAt) > 1000) {
-                fixTimeOfAllDayEventLoggedAt = System.currentTimeMillis();
-                Log.v("fixTimeOfAllDayEvent", msgLog);
-            }
-        } catch (org.joda.time.IllegalInstantException e) {
-            throw new org.joda.time.IllegalInstantException(msgLog + " caused by: " + e);
-        }
-        return fixed;
+        return allDay ? AllDayMillisConverter.toAllDayMillis(startMillis, startZone) : startMillis;
+    }
+
+    /** Epoch millis of the start, also for all day events */
+    public long getStartEpochMillis() {
+        return startMillis;
     }
 
     private void fixEndDate() {
-        if (endDate == null || !endDate.isAfter(startDate)) {
-            endDate = allDay ? startDate.plusDays(1) : startDate.plusSeconds(1);
+        if (endZone == null || endMillis <= startMillis) {
+            if (allDay) {
+                setEnd(getStartDate().plusDays(1));
+            } else {
+                endDate = null;
+                endMillis = startMillis + DateTimeConstants.MILLIS_PER_SECOND;
+                endZone = startZone;
+            }
         }
     }
 
@@ -130,31 +125,40 @@ public class CalendarEvent implements WidgetEvent {
     }
 
     public DateTime getEndDate() {
+        if (endDate == null && endZone != null) {
+            endDate = new DateTime(endMillis, endZone);
+        }
         return endDate;
     }
 
     public void setEndDate(DateTime endDate) {
-        this.endDate = allDay ? endDate.withTimeAtStartOfDay() : endDate;
+        setEnd(allDay ? endDate.withTimeAtStartOfDay() : endDate);
         fixEndDate();
     }
 
+    private void setEnd(DateTime date) {
+        endDate = date;
+        endMillis = date.getMillis();
+        endZone = date.getZone();
+    }
+
     public void setEndMillis(long endMillis) {
-        this.endDate = dateFromMillis(endMillis);
+        endDate = null;
+        endZone = getSettings().clock().getZone();
+        this.endMillis = allDay
+                ? AllDayMillisConverter.forZone(endZone).toStartOfDay(endMillis)
+                : endMillis;
         fixEndDate();
     }
 
+    /** For all day events these are millis of the end date in UTC, as in the Calendar provider */
     public long getEndMillis() {
-        return dateToMillis(endDate);
-    }
-
-    private long dateToMillis(DateTime date) {
-        return allDay ? toAllDayMillis(date) : date.getMillis();
+        return allDay ? AllDayMillisConverter.toAllDayMillis(endMillis, endZone) : endMillis;
     }
 
-    private long toAllDayMillis(DateTime date) {
-        DateTime utcDate = new DateTime(date.getYear(), date.getMonthOfYear(), date.getDayOfMonth(), 0, 0,
-                DateTimeZone.UTC);
-        return utcDate.getMillis();
+    /** Epoch millis of the end, also for all day events */
+    public long getEndEpochMillis() {
+        return endMillis;
     }
 
     public int getColor() {
@@ -210,7 +214,7 @@ public class CalendarEvent implements WidgetEvent {
         return "CalendarEvent [eventId=" + eventId
                 + (nonEmpty(title) ? ", title=" + title : "")
                 + ", startDate=" + getStartDate()
-                + (endDate != null ? ", endDate=" + endDate : "")
+                + (endZone != null ? ", endDate=" + getEndDate() : "")
                 + ", color=" + color
                 + (hasDefaultCalendarColor()
                     ? " is default"
@@ -231,7 +235,7 @@ public class CalendarEvent implements WidgetEvent {
             return false;
         }
         CalendarEvent that = (CalendarEvent) o;
-        if (eventId != that.eventId || !startDate.equals(that.startDate)) {
+        if (eventId != that.eventId || startMillis != that.startMillis) {
             return false;
         }
         return true;
@@ -240,21 +244,23 @@ public class CalendarEvent implements WidgetEvent {
     @Override
     public int hashCode() {
         int result = eventId;
-        result += 31 * startDate.hashCode();
+        result += 31 * Long.hashCode(startMillis);
         return result;
     }
 
     public boolean isActive() {
-        DateTime now = settings.clock().now();
-        return startDate.isBefore(now) && endDate.isAfter(now);
+        long now = settings.clock().nowMillis();
+        return startMillis < now && endMillis > now;
     }
 
     public boolean isPartOfMultiDayEvent() {
-        return endDate.withTimeAtStartOfDay().isAfter(startDate.withTimeAtStartOfDay());
+        MyClock clock = settings.clock();
+        return clock.startOfDay(clock.epochDayOf(endMillis, endZone), endZone) >
+                clock.startOfDay(clock.epochDayOf(startMillis, startZone), startZone);
     }
 
     public InstanceSettings getSettings() {
-        return AllSettings.instanceFromId(context, widgetId);
+        return settings;
     }
 
     public Context getContext() {
@@ -14,19 +14,24 @@ import androidx.annotation.NonNull;
 import org.andstatus.todoagenda.prefs.EventSource;
 import org.andstatus.todoagenda.prefs.FilterMode;
 import org.andstatus.todoagenda.prefs.OrderedEventSource;
+import org.andstatus.todoagenda.provider.CursorColumns;
 import org.andstatus.todoagenda.provider.EventProvider;
 import org.andstatus.todoagenda.provider.EventProviderType;
 import org.andstatus.todoagenda.util.CalendarIntentUtil;
 import org.andstatus.todoagenda.util.IntentUtil;
 import org.andstatus.todoagenda.util.MyClock;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import io.vavr.control.Try;
@@ -37,6 +42,22 @@ public class CalendarEventProvider extends EventProvider {
             CalendarContract.Calendars.CALENDAR_DISPLAY_NAME, CalendarContract.Calendars.CALENDAR_COLOR,
             CalendarContract.Calendars.ACCOUNT_NAME};
 
+    private static final String[] EVENT_PROJECTION = new String[]{Instances.CALENDAR_ID, Instances.EVENT_ID,
+            Instances.TITLE, Instances.BEGIN, Instances.END, Instances.ALL_DAY, Instances.EVENT_LOCATION,
+            Instances.HAS_ALARM, Instances.RRULE, Instances.DISPLAY_COLOR, Instances.CALENDAR_COLOR};
+    // Positions of columns in the EVENT_PROJECTION
+    private static final int COLUMN_CALENDAR_ID = 0;
+    private static final int COLUMN_EVENT_ID = 1;
+    private static final int COLUMN_TITLE = 2;
+    private static final int COLUMN_BEGIN = 3;
+    private static final int COLUMN_END = 4;
+    private static final int COLUMN_ALL_DAY = 5;
+    private static final int COLUMN_EVENT_LOCATION = 6;
+    private static final int COLUMN_HAS_ALARM = 7;
+    private static final int COLUMN_RRULE = 8;
+    private static final int COLUMN_DISPLAY_COLOR = 9;
+    private static final int COLUMN_CALENDAR_COLOR = 10;
+
     public static final String EVENT_SORT_ORDER = "startDay ASC, allDay DESC, begin ASC ";
     private static final String EVENT_SELECTION = Instances.SELF_ATTENDEE_STATUS + "!="
             + Attendees.ATTENDEE_STATUS_DECLINED;
@@ -52,32 +73,31 @@ public class CalendarEventProvider extends EventProvider {
                 getSettings().getActiveEventSources(type).isEmpty()) {
             return Collections.emptyList();
         }
-        List<CalendarEvent> eventList = getTimeFilteredEventList();
+        Set<CalendarEvent> events = getTimeFilteredEvents();
         if (getSettings().getShowPastEventsWithDefaultColor()) {
-            addPastEventsWithDefaultColor(eventList);
+            addPastEventsWithDefaultColor(events);
         }
 
         if (getSettings().getFilterMode() != FilterMode.NO_FILTERING) {
             if (getSettings().getShowOnlyClosestInstanceOfRecurringEvent()) {
-                filterShowOnlyClosestInstanceOfRecurringEvent(eventList);
+                filterShowOnlyClosestInstanceOfRecurringEvent(events);
             }
         }
-        return eventList;
+        return new ArrayList<>(events);
     }
 
-    private void addPastEventsWithDefaultColor(List<CalendarEvent> eventList) {
+    private void addPastEventsWithDefaultColor(Set<CalendarEvent> events) {
         for (CalendarEvent event : getPastEventsWithColorList()) {
-            if (eventList.contains(event)) {
-                eventList.remove(event);
-            }
-            eventList.add(event);
+            // The same event is moved to the end
+            events.remove(event);
+            events.add(event);
         }
     }
 
-    private void filterShowOnlyClosestInstanceOfRecurringEvent(@NonNull List<CalendarEvent> eventList) {
+    private void filterShowOnlyClosestInstanceOfRecurringEvent(@NonNull Set<CalendarEvent> events) {
         Map<Long, CalendarEvent> eventIds = new HashMap<>();
         List<CalendarEvent> toRemove = new ArrayList<>();
-        for (CalendarEvent event : eventList) {
+        for (CalendarEvent event : events) {
             CalendarEvent otherEvent = eventIds.get(event.getEventId());
             if (otherEvent == null) {
                 eventIds.put(event.getEventId(), event);
@@ -89,7 +109,7 @@ public class CalendarEventProvider extends EventProvider {
                 toRemove.add(event);
             }
         }
-        eventList.removeAll(toRemove);
+        toRemove.forEach(events::remove);
     }
 
     public DateTime getEndOfTimeRange() {
@@ -100,15 +120,18 @@ public class CalendarEventProvider extends EventProvider {
         return mStartOfTimeRange;
     }
 
-    private List<CalendarEvent> getTimeFilteredEventList() {
+    private Set<CalendarEvent> getTimeFilteredEvents() {
         FilterMode filterMode = getSettings().getFilterMode();
 
-        Uri.Builder builder = Instances.CONTENT_URI.buildUpon();
-        ContentUris.appendId(builder, (filterMode == FilterMode.NORMAL_FILTER
-                ? mStartOfTimeRange : MyClock.DATETIME_MIN).getMillis());
-        ContentUris.appendId(builder, (filterMode == FilterMode.NORMAL_FILTER
-                ? mEndOfTimeRange : MyClock.DATETIME_MAX).getMillis());
-        List<CalendarEvent> eventList = queryList(builder.build(), getCalendarSelection());
+        Uri uri = toInstancesUri(filterMode == FilterMode.NORMAL_FILTER ? mStartOfTimeRange : MyClock.DATETIME_MIN,
+                filterMode == FilterMode.NORMAL_FILTER ? mEndOfTimeRange : MyClock.DATETIME_MAX);
+        // The shared range is widened to whole UTC days, so that widgets with similar settings share the same query
+        // (see QueryResultsCache). Extra events are filtered out below.
+        Uri sharedUri = filterMode == FilterMode.NORMAL_FILTER
+                ? toInstancesUri(new DateTime(mStartOfTimeRange, DateTimeZone.UTC).withTimeAtStartOfDay().minusDays(1),
+                    new DateTime(mEndOfTimeRange, DateTimeZone.UTC).withTimeAtStartOfDay().plusDays(2))
+                : uri;
+        Set<CalendarEvent> events = queryList(uri, sharedUri, getCalendarSelection());
 
         switch (filterMode) {   // TODO: Implement fully...
             case NO_FILTERING:
@@ -117,30 +140,40 @@ public class CalendarEventProvider extends EventProvider {
                 // Filters in a query are not exactly correct for AllDay events: for them that filter
                 // time should be moved by a time zone... (i.e. by several hours)
                 // This is why we need to do additional filtering after querying a Content Provider:
-                for (Iterator<CalendarEvent> it = eventList.iterator(); it.hasNext(); ) {
+                for (Iterator<CalendarEvent> it = events.iterator(); it.hasNext(); ) {
                     CalendarEvent event = it.next();
-                    if (!event.getEndDate().isAfter(mStartOfTimeRange)
-                            || !mEndOfTimeRange.isAfter(event.getStartDate())) {
+                    if (event.getEndEpochMillis() <= mStartOfTimeRange.getMillis()
+                            || mEndOfTimeRange.getMillis() <= event.getStartEpochMillis()) {
                         // We remove using Iterator to avoid ConcurrentModificationException
                         it.remove();
                     }
                 }
                 break;
         }
-        return eventList;
+        return events;
+    }
+
+    private static Uri toInstancesUri(DateTime start, DateTime end) {
+        Uri.Builder builder = Instances.CONTENT_URI.buildUpon();
+        ContentUris.appendId(builder, start.getMillis());
+        ContentUris.appendId(builder, end.getMillis());
+        return builder.build();
     }
 
     private String getCalendarSelection() {
-        List<OrderedEventSource> activeSources = getSettings().getActiveEventSources(type);
+        // Sorted, so that the same set of calendars always produces the same selection
+        List<Integer> calendarIds = getSettings().getActiveEventSources(type).stream()
+                .map(source -> source.source.getId())
+                .sorted()
+                .collect(Collectors.toList());
         StringBuilder stringBuilder = new StringBuilder(EVENT_SELECTION);
-        if (!activeSources.isEmpty()) {
+        if (!calendarIds.isEmpty()) {
             stringBuilder.append(AND_BRACKET);
-            Iterator<OrderedEventSource> iterator = activeSources.iterator();
+            Iterator<Integer> iterator = calendarIds.iterator();
             while (iterator.hasNext()) {
-                EventSource source = iterator.next().source;
                 stringBuilder.append(Instances.CALENDAR_ID);
                 stringBuilder.append(EQUALS);
-                stringBuilder.append(source.getId());
+                stringBuilder.append(iterator.next());
                 if (iterator.hasNext()) {
                     stringBuilder.append(OR);
                 }
@@ -150,38 +183,33 @@ public class CalendarEventProvider extends EventProvider {
         return stringBuilder.toString();
     }
 
-    private List<CalendarEvent> queryList(Uri uri, String selection) {
-        return myContentResolver.foldEvents(uri, getProjection(), selection, null, EVENT_SORT_ORDER,
-                new ArrayList<>(), eventList -> cursor -> {
-                    CalendarEvent event = newCalendarEvent(cursor);
-                    if (!eventList.contains(event) && !mKeywordsFilter.matched(event.getTitle())) {
-                        eventList.add(event);
-                    }
-                    return eventList;
-                });
+    /** Events in the order of the query. Events are equal, if they have the same id and start date,
+     * so the set doesn't contain such duplicates */
+    private Set<CalendarEvent> queryList(Uri uri, Uri sharedUri, String selection) {
+        return myContentResolver.foldSharedEvents(uri, sharedUri, getProjection(), selection, null, EVENT_SORT_ORDER,
+                new LinkedHashSet<>(), newFoldingFunction());
+    }
+
+    private Function<Set<CalendarEvent>, Function<Cursor, Set<CalendarEvent>>> newFoldingFunction() {
+        CursorColumns columns = new CursorColumns(EVENT_PROJECTION);
+        return events -> cursor -> {
+            CalendarEvent event = newCalendarEvent(cursor, columns.of(cursor));
+            if (!events.contains(event) && !mKeywordsFilter.matched(event.getTitle())) {
+                events.add(event);
+            }
+            return events;
+        };
     }
 
     public static String[] getProjection() {
-        List<String> columnNames = new ArrayList<>();
-        columnNames.add(Instances.CALENDAR_ID);
-        columnNames.add(Instances.EVENT_ID);
-        columnNames.add(Instances.TITLE);
-        columnNames.add(Instances.BEGIN);
-        columnNames.add(Instances.END);
-        columnNames.add(Instances.ALL_DAY);
-        columnNames.add(Instances.EVENT_LOCATION);
-        columnNames.add(Instances.HAS_ALARM);
-        columnNames.add(Instances.RRULE);
-        columnNames.add(Instances.DISPLAY_COLOR);
-        columnNames.add(Instances.CALENDAR_COLOR);
-        return columnNames.toArray(new String[0]);
+        return EVENT_PROJECTION.clone();
     }
 
+    /** Only events after the previous query of past events are queried, earlier ones are taken from a cache */
     private List<CalendarEvent> getPastEventsWithColorList() {
-        Uri.Builder builder = Instances.CONTENT_URI.buildUpon();
-        ContentUris.appendId(builder, 0);
-        ContentUris.appendId(builder, getSettings().clock().now().getMillis());
-        return queryList(builder.build(), getPastEventsWithColorSelection()).stream()
+        return myContentResolver.foldEventsUntil(Instances.CONTENT_URI, getSettings().clock().now().getMillis(),
+                getProjection(), getPastEventsWithColorSelection(), EVENT_SORT_ORDER,
+                new LinkedHashSet<>(), newFoldingFunction()).stream()
             .filter(ev -> getSettings().getFilterMode() != FilterMode.DEBUG_FILTER || ev.hasDefaultCalendarColor())
             .collect(Collectors.toList());
     }
@@ -193,25 +221,24 @@ public class CalendarEventProvider extends EventProvider {
             CLOSING_BRACKET;
     }
 
-    private CalendarEvent newCalendarEvent(Cursor cursor) {
+    private CalendarEvent newCalendarEvent(Cursor cursor, CursorColumns columns) {
         OrderedEventSource source = getSettings()
-            .getActiveEventSource(type, cursor.getInt(cursor.getColumnIndex(Instances.CALENDAR_ID)));
+            .getActiveEventSource(type, columns.getInt(cursor, COLUMN_CALENDAR_ID));
 
-        boolean allDay = cursor.getInt(cursor.getColumnIndex(Instances.ALL_DAY)) > 0;
+        boolean allDay = columns.getInt(cursor, COLUMN_ALL_DAY) > 0;
         CalendarEvent event = new CalendarEvent(getSettings(), context, widgetId, allDay);
         event.setEventSource(source);
-        event.setEventId(cursor.getInt(cursor.getColumnIndex(Instances.EVENT_ID)));
-        event.setTitle(cursor.getString(cursor.getColumnIndex(Instances.TITLE)));
-        event.setStartMillis(cursor.getLong(cursor.getColumnIndex(Instances.BEGIN)));
-        event.setEndMillis(cursor.getLong(cursor.getColumnIndex(Instances.END)));
-        event.setLocation(cursor.getString(cursor.getColumnIndex(Instances.EVENT_LOCATION)));
-        event.setAlarmActive(cursor.getInt(cursor.getColumnIndex(Instances.HAS_ALARM)) > 0);
-        event.setRecurring(cursor.getString(cursor.getColumnIndex(Instances.RRULE)) != null);
-        event.setColor(getAsOpaque(cursor.getInt(cursor.getColumnIndex(Instances.DISPLAY_COLOR))));
-        getColumnIndex(cursor, Instances.CALENDAR_COLOR)
-                .map(ind -> getAsOpaque(cursor.getInt(ind)))
-                .ifPresent(event::setCalendarColor);
-
+        event.setEventId(columns.getInt(cursor, COLUMN_EVENT_ID));
+        event.setTitle(columns.getString(cursor, COLUMN_TITLE));
+        event.setStartMillis(columns.getLong(cursor, COLUMN_BEGIN));
+        event.setEndMillis(columns.getLong(cursor, COLUMN_END));
+        event.setLocation(columns.getString(cursor, COLUMN_EVENT_LOCATION));
+        event.setAlarmActive(columns.getInt(cursor, COLUMN_HAS_ALARM) > 0);
+        event.setRecurring(columns.getString(cursor, COLUMN_RRULE) != null);
+        event.setColor(getAsOpaque(columns.getInt(cursor, COLUMN_DISPLAY_COLOR)));
+        if (!columns.isNull(cursor, COLUMN_CALENDAR_COLOR)) {
+            event.setCalendarColor(getAsOpaque(columns.getInt(cursor, COLUMN_CALENDAR_COLOR)));
+        }
         return event;
     }
 
@@ -9,7 +9,6 @@ import androidx.annotation.NonNull;
 import org.andstatus.todoagenda.widget.AlarmIndicatorScaled;
 import org.andstatus.todoagenda.R;
 import org.andstatus.todoagenda.widget.RecurringIndicatorScaled;
-import org.andstatus.todoagenda.prefs.colors.Shading;
 import org.andstatus.todoagenda.prefs.colors.TextColorPref;
 import org.andstatus.todoagenda.provider.EventProvider;
 import org.andstatus.todoagenda.widget.CalendarEntry;
@@ -79,12 +78,7 @@ public class CalendarEventVisualizer extends WidgetEntryVisualizer<CalendarEntry
             rv.setViewVisibility(viewId, View.VISIBLE);
             TextColorPref pref = TextColorPref.forTitle(entry);
             setImageFromAttr(getSettings().colors().getThemeContext(pref), rv, viewId, imageAttrId);
-            Shading shading = getSettings().colors().getShading(pref);
-            int alpha = 255;
-            if (shading == Shading.DARK || shading == Shading.LIGHT) {
-                alpha = 128;
-            }
-            setAlpha(rv, viewId, alpha);
+            setAlpha(rv, viewId, getStyle().getIndicatorAlpha(pref));
         } else {
             rv.setViewVisibility(viewId, View.GONE);
         }
@@ -124,7 +118,7 @@ public class CalendarEventVisualizer extends WidgetEntryVisualizer<CalendarEntry
                 .withTimeAtStartOfDay();
         if (!event.hasDefaultCalendarColor()   // ??? TODO: fix logic
                 && firstDate.isBefore(getCalendarEventProvider().getStartOfTimeRange())
-                && event.getEndDate().isAfter(getCalendarEventProvider().getStartOfTimeRange())) {
+                && event.getEndEpochMillis() > getCalendarEventProvider().getStartOfTimeRange().getMillis()) {
             if (event.isAllDay() || firstDate.isBefore(dayOfStartOfTimeRange)) {
                 firstDate = dayOfStartOfTimeRange;
             }
@@ -141,7 +135,7 @@ public class CalendarEventVisualizer extends WidgetEntryVisualizer<CalendarEntry
         if (endDate.isAfter(getCalendarEventProvider().getEndOfTimeRange())) {
             endDate = getCalendarEventProvider().getEndOfTimeRange();
         }
-        DateTime thisDay = dayOneEntry.entryDay.plusDays(1).withTimeAtStartOfDay();
+        DateTime thisDay = dayOneEntry.getEntryDay().plusDays(1).withTimeAtStartOfDay();
         while (thisDay.isBefore(endDate)) {
             CalendarEntry nextEntry = CalendarEntry.fromEvent(getSettings(), dayOneEntry.getEvent(), thisDay);
             entryList.add(nextEntry);
@@ -10,10 +10,22 @@ import org.andstatus.todoagenda.EnvironmentChangedReceiver;
 import org.andstatus.todoagenda.R;
 import org.andstatus.todoagenda.provider.EventProviderType;
 import org.andstatus.todoagenda.provider.WidgetData;
+import org.andstatus.todoagenda.util.WidgetStyle;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static org.andstatus.todoagenda.AppWidgetProvider.getWidgetIds;
 import static org.andstatus.todoagenda.prefs.SettingsStorage.loadJsonFromFile;
@@ -25,20 +37,39 @@ import static org.andstatus.todoagenda.prefs.SettingsStorage.loadJsonFromFile;
 public class AllSettings {
     private static final String TAG = AllSettings.class.getSimpleName();
     private static volatile boolean instancesLoaded = false;
-    private static final Map<Integer, InstanceSettings> instances = new ConcurrentHashMap<>();
+    /** Immutable snapshot of settings by widget id. Readers don't lock, writers replace the snapshot under the lock */
+    private static volatile Map<Integer, InstanceSettings> instances = Collections.emptyMap();
+    private static final Object lock = new Object();
+    /** Settings of widgets, which are being loaded from files */
+    private static final Map<Integer, Future<InstanceSettings>> loading = new ConcurrentHashMap<>();
+
+    private static final int LOAD_THREADS = 4;
+    /** Settings files of widgets are read and parsed in parallel */
+    private static final ExecutorService loadExecutor = newLoadExecutor();
+
+    private static ExecutorService newLoadExecutor() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(LOAD_THREADS, LOAD_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, TAG + "-load-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 
     @NonNull
     public static InstanceSettings instanceFromId(Context context, Integer widgetId) {
         ensureLoadedFromFiles(context, false);
-        synchronized (instances) {
-            InstanceSettings settings = instances.get(widgetId);
-            return settings == null ? newInstance(context, widgetId) : settings;
-        }
+        awaitLoaded(context, widgetId);
+        InstanceSettings settings = instances.get(widgetId);
+        return settings == null ? newInstance(context, widgetId) : settings;
     }
 
     @NonNull
     private static InstanceSettings newInstance(Context context, Integer widgetId) {
-        synchronized (instances) {
+        synchronized (lock) {
             InstanceSettings settings = instances.get(widgetId);
             if (settings == null) {
                 if (widgetId != 0 && ApplicationPreferences.getWidgetId(context) == widgetId) {
@@ -56,32 +87,76 @@ public class AllSettings {
         }
     }
 
+    /** Starts loading settings of all widgets in parallel. Each widget becomes available, when its settings
+     * are loaded, see {@link #awaitLoaded(Context, int)}. Receivers are registered, when all widgets are loaded */
     public static void ensureLoadedFromFiles(Context context, boolean reInitialize) {
         if (instancesLoaded && !reInitialize) return;
 
-        synchronized (instances) {
+        synchronized (lock) {
             if (instancesLoaded && !reInitialize) return;
 
-            instances.clear();
+            instances = Collections.emptyMap();
+            loading.clear();
             EventProviderType.initialize(context, reInitialize);
+            Map<Integer, CompletableFuture<InstanceSettings>> futures = new HashMap<>();
             for (int widgetId : getWidgetIds(context)) {
-                InstanceSettings settings;
-                try {
-                    JSONObject json = loadJsonFromFile(context, getStorageKey(widgetId));
-                    settings = InstanceSettings.fromJson(context, instances.get(widgetId), json);
-                    if (settings.widgetId == 0) {
-                        newInstance(context, widgetId);
-                    } else {
-                        settings.logMe(TAG, "ensureLoadedFromFiles put", widgetId);
-                        instances.put(widgetId, settings);
-                    }
-                } catch (Exception e) { // Starting from API21 android.system.ErrnoException may be thrown
-                    Log.e("loadInstances", "widgetId:" + widgetId, e);
-                    newInstance(context, widgetId);
-                }
+                CompletableFuture<InstanceSettings> future = CompletableFuture.supplyAsync(
+                        () -> loadFromFile(context, widgetId), loadExecutor);
+                futures.put(widgetId, future);
+                loading.put(widgetId, future);
             }
             instancesLoaded = true;
-            EnvironmentChangedReceiver.registerReceivers(instances);
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).thenRun(() -> {
+                futures.forEach((widgetId, future) -> onLoaded(context, widgetId, future));
+                EnvironmentChangedReceiver.registerReceivers(instances);
+            });
+        }
+    }
+
+    /** A loading thread cannot wait for other widgets. Names of stored settings were unique,
+     * when they were saved, so names of already loaded settings only are checked */
+    private static InstanceSettings loadFromFile(Context context, int widgetId) {
+        try {
+            JSONObject json = loadJsonFromFile(context, getStorageKey(widgetId));
+            return InstanceSettings.fromStorage(context, json, instances);
+        } catch (Exception e) { // Starting from API21 android.system.ErrnoException may be thrown
+            Log.e("loadInstances", "widgetId:" + widgetId, e);
+            return InstanceSettings.EMPTY;
+        }
+    }
+
+    /** Waits for settings of this widget only, if they are being loaded */
+    public static void awaitLoaded(Context context, int widgetId) {
+        Future<InstanceSettings> future = loading.get(widgetId);
+        if (future != null) {
+            onLoaded(context, widgetId, future);
+        }
+    }
+
+    private static void awaitAllLoaded(Context context) {
+        for (Map.Entry<Integer, Future<InstanceSettings>> entry : loading.entrySet()) {
+            onLoaded(context, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void onLoaded(Context context, int widgetId, Future<InstanceSettings> future) {
+        InstanceSettings settings;
+        try {
+            settings = future.get();
+        } catch (Exception e) {
+            Log.e("loadInstances", "widgetId:" + widgetId, e);
+            settings = InstanceSettings.EMPTY;
+        }
+        synchronized (lock) {
+            // Loaded settings are put only once, and not after they were reloaded or deleted
+            if (!loading.remove(widgetId, future)) return;
+
+            if (settings.widgetId == 0) {
+                newInstance(context, widgetId);
+            } else {
+                settings.logMe(TAG, "ensureLoadedFromFiles put", widgetId);
+                putInstance(settings);
+            }
         }
     }
 
@@ -89,12 +164,24 @@ public class AllSettings {
          save(tag, "addNew", settings);
     }
 
+    private static void putInstance(InstanceSettings settings) {
+        updateInstances(map -> map.put(settings.widgetId, settings));
+    }
+
+    private static void updateInstances(Consumer<Map<Integer, InstanceSettings>> update) {
+        synchronized (lock) {
+            Map<Integer, InstanceSettings> map = new HashMap<>(instances);
+            update.accept(map);
+            instances = Collections.unmodifiableMap(map);
+        }
+    }
+
     /** @return true if success */
     private static boolean save(String tag, String method, InstanceSettings settings) {
         if (settings.isEmpty()) {
             settings.logMe(tag, "Skipped save empty from " + method, settings.widgetId);
         } else if (settings.save(tag, method)) {
-            instances.put(settings.widgetId, settings);
+            putInstance(settings);
             return true;
         }
         return false;
@@ -118,9 +205,11 @@ public class AllSettings {
 
     public static void delete(Context context, int widgetId) {
         ensureLoadedFromFiles(context, false);
-        synchronized (instances) {
-            instances.remove(widgetId);
+        synchronized (lock) {
+            loading.remove(widgetId);
+            updateInstances(map -> map.remove(widgetId));
             SettingsStorage.delete(context, getStorageKey(widgetId));
+            WidgetStyle.forget(widgetId);
             if (ApplicationPreferences.getWidgetId(context) == widgetId) {
                 ApplicationPreferences.setWidgetId(context, 0);
             }
@@ -128,13 +217,20 @@ public class AllSettings {
     }
 
     public static String uniqueInstanceName(Context context, int widgetId, String proposedInstanceName) {
+        return uniqueInstanceName(context, widgetId, proposedInstanceName,
+                context == null ? instances : getInstances(context));
+    }
+
+    /** @param instances settings of other widgets, which names are taken */
+    static String uniqueInstanceName(Context context, int widgetId, String proposedInstanceName,
+                                     Map<Integer, InstanceSettings> instances) {
         if (proposedInstanceName != null && proposedInstanceName.trim().length() > 0 &&
-          !existsInstanceName(widgetId, proposedInstanceName)) {
+          !existsInstanceName(instances, widgetId, proposedInstanceName)) {
             return proposedInstanceName;
         }
 
         String nameByWidgetId = defaultInstanceName(context, widgetId);
-        if (!existsInstanceName(widgetId, nameByWidgetId)) {
+        if (!existsInstanceName(instances, widgetId, nameByWidgetId)) {
             return nameByWidgetId;
         }
 
@@ -143,7 +239,7 @@ public class AllSettings {
         do {
             name = defaultInstanceName(context, index);
             index = index + 1;
-        } while (existsInstanceName(widgetId, name));
+        } while (existsInstanceName(instances, widgetId, name));
         return name;
     }
 
@@ -151,7 +247,7 @@ public class AllSettings {
         return context.getText(R.string.app_name) + " " + index;
     }
 
-    private static boolean existsInstanceName(int widgetId, String name) {
+    private static boolean existsInstanceName(Map<Integer, InstanceSettings> instances, int widgetId, String name) {
         for (InstanceSettings settings : instances.values()) {
             if (settings.getWidgetId() != widgetId && settings.getWidgetInstanceName().equals(name)) {
                 return true;
@@ -162,25 +258,36 @@ public class AllSettings {
 
     public static Map<Integer, InstanceSettings> getInstances(Context context) {
         ensureLoadedFromFiles(context, false);
+        awaitAllLoaded(context);
         return instances;
     }
 
+    /** Settings of widgets, which are loaded already. Settings of other widgets may still be loading */
     public static Map<Integer, InstanceSettings> getLoadedInstances() {
         return instances;
     }
 
     public static void forget() {
-        synchronized (instances) {
-            instances.clear();
+        synchronized (lock) {
+            loading.clear();
+            instances = Collections.emptyMap();
             instancesLoaded = false;
         }
     }
 
     public static InstanceSettings restoreWidgetSettings(Activity activity, JSONObject json, int targetWidgetId) {
+        ensureLoadedFromFiles(activity, false);
+        awaitLoaded(activity, targetWidgetId);
         InstanceSettings settings = WidgetData.fromJson(json)
                 .getSettingsForWidget(activity, instances.get(targetWidgetId), targetWidgetId);
         if (settings.hasResults()) {
             settings.clock().setSnapshotMode(SnapshotMode.SNAPSHOT_TIME, settings);
+            // Don't keep all restored results in memory
+            try {
+                settings.storeResults();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to store results of widget " + targetWidgetId, e);
+            }
         }
         save(TAG, "restoreWidgetSettings", settings);
         return settings;
@@ -9,6 +9,8 @@ import org.andstatus.todoagenda.provider.EventProviderType;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.Objects;
+
 public class EventSource {
     private static final String TAG = EventSource.class.getSimpleName();
     public final static EventSource EMPTY = new EventSource(EventProviderType.EMPTY, 0, "Empty", "", 0, false);
@@ -166,6 +168,15 @@ public class EventSource {
         return color;
     }
 
+    /** Unlike {@link #equals(Object)}, compares all stored properties */
+    boolean isSameAs(EventSource that) {
+        return equals(that)
+                && color == that.color
+                && isAvailable == that.isAvailable
+                && Objects.equals(title, that.title)
+                && Objects.equals(summary, that.summary);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -5,6 +5,7 @@ import android.content.res.Configuration;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.andstatus.todoagenda.widget.Alignment;
 import org.andstatus.todoagenda.prefs.colors.ColorThemeType;
@@ -24,12 +25,19 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
+import static org.andstatus.todoagenda.prefs.SettingsStorage.bytesFile;
+import static org.andstatus.todoagenda.prefs.SettingsStorage.deleteBytesExcept;
+import static org.andstatus.todoagenda.prefs.SettingsStorage.isBytesFileOf;
+import static org.andstatus.todoagenda.prefs.SettingsStorage.saveBytes;
 import static org.andstatus.todoagenda.prefs.SettingsStorage.saveJson;
 
 /**
@@ -158,6 +166,8 @@ public class InstanceSettings {
     private int refreshPeriodMinutes = PREF_REFRESH_PERIOD_MINUTES_DEFAULT;
 
     private static final String PREF_RESULTS_STORAGE = "resultsStorage";
+    /** Name of the file with results, which are stored separately in a compact binary form */
+    private static final String PREF_RESULTS_FILE = "resultsFile";
     private volatile QueryResultsStorage resultsStorage = null;
 
     public static InstanceSettings fromJson(Context context, InstanceSettings storedSettings, JSONObject json) {
@@ -172,10 +182,18 @@ public class InstanceSettings {
         }
 
         InstanceSettings settings = new InstanceSettings(context, widgetId, instanceName);
-        return settings.setFromJson(json);
+        return settings.setFromJson(json, false);
     }
 
-    private InstanceSettings setFromJson(JSONObject json) {
+    /** Settings, saved by {@link #save(String, String)}. Their results are stored in a separate binary file
+     * @param instances settings of other widgets, which names are taken */
+    static InstanceSettings fromStorage(Context context, JSONObject json, Map<Integer, InstanceSettings> instances) {
+        InstanceSettings settings = new InstanceSettings(context, json.optInt(PREF_WIDGET_ID),
+                json.optString(PREF_WIDGET_INSTANCE_NAME), instances);
+        return settings.setFromJson(json, true);
+    }
+
+    private InstanceSettings setFromJson(JSONObject json, boolean fromStorage) {
         if (widgetId == 0) {
             return InstanceSettings.EMPTY;
         }
@@ -307,6 +325,8 @@ public class InstanceSettings {
             }
             if (json.has(PREF_RESULTS_STORAGE)) {
                 setResultsStorage(QueryResultsStorage.fromJson(widgetId, json.getJSONObject(PREF_RESULTS_STORAGE)));
+            } else if (fromStorage) {
+                loadResultsStorage(json);
             }
             clock().setSnapshotMode(SnapshotMode.fromValue(json.optString(PREF_SNAPSHOT_MODE)), this);
         } catch (JSONException e) {
@@ -316,6 +336,25 @@ public class InstanceSettings {
         return this;
     }
 
+    /** Results, to which the stored json refers, are read from their file, when they are requested */
+    private void loadResultsStorage(JSONObject json) {
+        QueryResultsStorage storage = QueryResultsStorage.fromFile(widgetId,
+                bytesFile(context, getStorageKey(widgetId), json.optString(PREF_RESULTS_FILE)));
+        if (!storage.isEmpty()) {
+            setResultsStorage(storage);
+        }
+    }
+
+    /** Stores results to their file, from which they are read, when they are requested, so they are not kept
+     * in memory. {@link #save(String, String)} doesn't write them again. Should be called before these settings
+     * are published */
+    void storeResults() throws IOException {
+        if (!hasResults()) return;
+
+        File file = saveBytes(context, getStorageKey(widgetId), resultsStorage.toBytes(widgetId));
+        setResultsStorage(QueryResultsStorage.fromFile(widgetId, file));
+    }
+
     static InstanceSettings fromApplicationPreferences(Context context, int widgetId, InstanceSettings settingsStored) {
         synchronized (ApplicationPreferences.class) {
             InstanceSettings settings = new InstanceSettings(context, widgetId,
@@ -405,9 +444,17 @@ public class InstanceSettings {
     }
 
     public InstanceSettings(Context context, int widgetId, String proposedInstanceName) {
+        this(context, widgetId, proposedInstanceName, null);
+    }
+
+    /** @param instances settings of other widgets, which names are taken. If null, settings of all widgets */
+    private InstanceSettings(Context context, int widgetId, String proposedInstanceName,
+                             @Nullable Map<Integer, InstanceSettings> instances) {
         this.context = context;
         this.widgetId = widgetId;
-        widgetInstanceName = AllSettings.uniqueInstanceName(context, widgetId, proposedInstanceName);
+        widgetInstanceName = instances == null
+                ? AllSettings.uniqueInstanceName(context, widgetId, proposedInstanceName)
+                : AllSettings.uniqueInstanceName(context, widgetId, proposedInstanceName, instances);
         defaultColors = context == null ? ThemeColors.EMPTY : new ThemeColors(context, ColorThemeType.SINGLE);
     }
 
@@ -424,15 +471,33 @@ public class InstanceSettings {
         }
         logMe(tag, msgLog, widgetId);
         try {
-            saveJson(context, getStorageKey(widgetId), toJson());
+            // Results are stored separately in a compact binary form. The json is written last and refers to them,
+            // so stored settings and results don't mismatch, if the process is killed in between
+            String key = getStorageKey(widgetId);
+            JSONObject json = toJson(false);
+            File resultsFile = null;
+            if (hasResults()) {
+                resultsFile = resultsStorage.getStoredFile().filter(file -> isBytesFileOf(context, key, file))
+                        .orElse(null);
+                if (resultsFile == null) {
+                    resultsFile = saveBytes(context, key, resultsStorage.toBytes(widgetId));
+                }
+                json.put(PREF_RESULTS_FILE, resultsFile.getName());
+            }
+            saveJson(context, key, json);
+            deleteBytesExcept(context, key, resultsFile);
             return true;
-        } catch (IOException e) {
+        } catch (IOException | JSONException e) {
             Log.e(tag, msgLog + "\n" + toString(), e);
         }
         return false;
     }
 
     public JSONObject toJson() {
+        return toJson(true);
+    }
+
+    private JSONObject toJson(boolean withResults) {
         JSONObject json = new JSONObject();
         try {
             json.put(PREF_WIDGET_ID, widgetId);
@@ -478,7 +543,7 @@ public class InstanceSettings {
             json.put(PREF_WIDGET_HEADER_LAYOUT, widgetHeaderLayout.value);
             json.put(PREF_TEXT_SIZE_SCALE, textSizeScale.preferenceValue);
             json.put(PREF_DAY_HEADER_ALIGNMENT, dayHeaderAlignment);
-            if (resultsStorage != null) {
+            if (withResults && resultsStorage != null) {
                 json.put(PREF_RESULTS_STORAGE, resultsStorage.toJson(getContext(), widgetId, false));
             }
         } catch (JSONException e) {
@@ -701,13 +766,53 @@ public class InstanceSettings {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        InstanceSettings settings = (InstanceSettings) o;
-        return toJson().toString().equals(settings.toJson().toString());
+        InstanceSettings that = (InstanceSettings) o;
+        return widgetId == that.widgetId
+                && compactLayout == that.compactLayout
+                && showDayHeaders == that.showDayHeaders
+                && showPastEventsUnderOneHeader == that.showPastEventsUnderOneHeader
+                && horizontalLineBelowDayHeader == that.horizontalLineBelowDayHeader
+                && showDaysWithoutEvents == that.showDaysWithoutEvents
+                && showEventIcon == that.showEventIcon
+                && multilineTitle == that.multilineTitle
+                && multilineDetails == that.multilineDetails
+                && showEndTime == that.showEndTime
+                && showLocation == that.showLocation
+                && fillAllDayEvents == that.fillAllDayEvents
+                && indicateAlerts == that.indicateAlerts
+                && indicateRecurring == that.indicateRecurring
+                && showPastEventsWithDefaultColor == that.showPastEventsWithDefaultColor
+                && eventRange == that.eventRange
+                && showOnlyClosestInstanceOfRecurringEvent == that.showOnlyClosestInstanceOfRecurringEvent
+                && hideDuplicates == that.hideDuplicates
+                && refreshPeriodMinutes == that.refreshPeriodMinutes
+                && widgetHeaderLayout == that.widgetHeaderLayout
+                && eventEntryLayout == that.eventEntryLayout
+                && eventsEnded == that.eventsEnded
+                && allDayEventsPlacement == that.allDayEventsPlacement
+                && taskScheduling == that.taskScheduling
+                && taskWithoutDates == that.taskWithoutDates
+                && filterMode == that.filterMode
+                && textSizeScale == that.textSizeScale
+                && clock().getSnapshotMode() == that.clock().getSnapshotMode()
+                && Objects.equals(clock().getLockedTimeZoneId(), that.clock().getLockedTimeZoneId())
+                && Objects.equals(widgetInstanceName, that.widgetInstanceName)
+                && Objects.equals(dayHeaderAlignment, that.dayHeaderAlignment)
+                && Objects.equals(hideBasedOnKeywords, that.hideBasedOnKeywords)
+                && Objects.equals(timeFormat, that.timeFormat)
+                && widgetHeaderDateFormat.save().equals(that.widgetHeaderDateFormat.save())
+                && dayHeaderDateFormat.save().equals(that.dayHeaderDateFormat.save())
+                && entryDateFormat.save().equals(that.entryDateFormat.save())
+                && defaultColors.equals(that.defaultColors)
+                && (darkColors.isEmpty() ? that.darkColors.isEmpty() : darkColors.equals(that.darkColors))
+                && OrderedEventSource.areSame(getActiveEventSources(), that.getActiveEventSources())
+                && QueryResultsStorage.areSame(resultsStorage, that.resultsStorage);
     }
 
     @Override
     public int hashCode() {
-        return toJson().toString().hashCode();
+        return Objects.hash(widgetId, widgetInstanceName, eventRange, eventEntryLayout, textSizeScale,
+                clock().getSnapshotMode(), getActiveEventSources().size());
     }
 
     public boolean getIndicateAlerts() {
@@ -789,11 +894,11 @@ public class InstanceSettings {
 
     public InstanceSettings asForWidget(Context context, int targetWidgetId) {
         String newName = AllSettings.uniqueInstanceName(context, targetWidgetId, widgetInstanceName);
-        return new InstanceSettings(context, targetWidgetId, newName).setFromJson(toJson());
+        return new InstanceSettings(context, targetWidgetId, newName).setFromJson(toJson(), false);
     }
 
     public boolean hasResults() {
-        return resultsStorage != null && !resultsStorage.getResults().isEmpty();
+        return resultsStorage != null && !resultsStorage.isEmpty();
     }
 
     public QueryResultsStorage getResultsStorage() {
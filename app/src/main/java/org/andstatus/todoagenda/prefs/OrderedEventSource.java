@@ -86,6 +86,16 @@ public class OrderedEventSource {
         return new JSONArray(jsonObjects);
     }
 
+    /** @return true if the lists have the same sources in the same order, including all stored properties */
+    public static boolean areSame(List<OrderedEventSource> sources1, List<OrderedEventSource> sources2) {
+        if (sources1.size() != sources2.size()) return false;
+
+        for (int ind = 0; ind < sources1.size(); ind++) {
+            if (!sources1.get(ind).source.isSameAs(sources2.get(ind).source)) return false;
+        }
+        return true;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -5,11 +5,11 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
@@ -18,10 +18,12 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
 
 /**
  * @author yvolk@yurivolkov.com
@@ -30,13 +32,18 @@ public class SettingsStorage {
     private static final String TAG = SettingsStorage.class.getSimpleName();
 
     private static final int BUFFER_LENGTH = 4 * 1024;
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String BYTES_SUFFIX = ".bin";
+
+    /** Checksums of files, as they were last written or read, by file path. Unchanged content is not rewritten */
+    private static final Map<String, Long> checksums = new ConcurrentHashMap<>();
 
     private SettingsStorage() {
         // Not instantiable
     }
 
     public static void saveJson(Context context, String key, JSONObject json) throws IOException {
-        writeStringToFile(json.toString(), jsonFile(context, key));
+        writeIfChanged(jsonFile(context, key), json.toString().getBytes(StandardCharsets.UTF_8));
     }
 
     @NonNull
@@ -44,8 +51,37 @@ public class SettingsStorage {
         return getJSONObject(jsonFile(context, key));
     }
 
+    /** Binary files of the key have versioned names: the same name means the same content.
+     * So a new file doesn't replace the one, which is referred by the current JSON file of the key
+     * @return the file with these bytes */
+    public static File saveBytes(Context context, String key, byte[] bytes) throws IOException {
+        File file = new File(getExistingPreferencesDirectory(context),
+                key + "." + Long.toHexString(checksum(bytes)) + BYTES_SUFFIX);
+        if (!file.exists() || file.length() != bytes.length) {
+            writeAtomically(file, bytes);
+        }
+        return file;
+    }
+
+    /** Deletes both JSON and binary files of the key */
     public static void delete(Context context, String key) {
-        File file = jsonFile(context, key);
+        deleteFile(jsonFile(context, key));
+        deleteBytesExcept(context, key, null);
+    }
+
+    /** Deletes binary files of the key except the one, which is referred by its current JSON file */
+    public static void deleteBytesExcept(Context context, String key, @Nullable File fileToKeep) {
+        File[] files = getExistingPreferencesDirectory(context).listFiles(
+                (dir, name) -> isBytesFileName(key, name) && (fileToKeep == null || !name.equals(fileToKeep.getName())));
+        if (files == null) return;
+
+        for (File file : files) {
+            deleteFile(file);
+        }
+    }
+
+    private static void deleteFile(File file) {
+        checksums.remove(file.getPath());
         if (file.exists()) {
             file.delete();
         }
@@ -56,6 +92,23 @@ public class SettingsStorage {
         return new File(getExistingPreferencesDirectory(context), key + ".json");
     }
 
+    /** @param name of the binary file, as it was returned by {@link #saveBytes(Context, String, byte[])}.
+     *             Empty for a file of older versions, which was not versioned */
+    @NonNull
+    public static File bytesFile(Context context, String key, String name) {
+        return new File(getExistingPreferencesDirectory(context),
+                isBytesFileName(key, name) ? name : key + BYTES_SUFFIX);
+    }
+
+    public static boolean isBytesFileOf(Context context, String key, File file) {
+        return isBytesFileName(key, file.getName())
+                && getExistingPreferencesDirectory(context).equals(file.getParentFile());
+    }
+
+    private static boolean isBytesFileName(String key, String name) {
+        return name.startsWith(key + ".") && name.endsWith(BYTES_SUFFIX) && name.indexOf(File.separatorChar) < 0;
+    }
+
     private static File getExistingPreferencesDirectory(Context context) {
         File dir = new File(context.getApplicationInfo().dataDir, "shared_prefs");
         if (!dir.exists()) {
@@ -64,23 +117,44 @@ public class SettingsStorage {
         return dir;
     }
 
-    private static void writeStringToFile(String string, File file) throws IOException {
-        FileOutputStream fileOutputStream = null;
-        Writer out = null;
-        try {
-            fileOutputStream = new FileOutputStream(file.getAbsolutePath(), false);
-            out = new BufferedWriter(new OutputStreamWriter(fileOutputStream, "UTF-8"));
-            out.write(string);
-        } finally {
-            closeSilently(out);
-            closeSilently(fileOutputStream);
+    /** The file is not rewritten, if the checksum and the length of its content, as they were last written
+     * or read, are the same. The file is not read for this check */
+    private static void writeIfChanged(File file, byte[] bytes) throws IOException {
+        long checksum = checksum(bytes);
+        Long savedChecksum = checksums.get(file.getPath());
+        if (savedChecksum != null && savedChecksum == checksum && file.length() == bytes.length) return;
+
+        writeAtomically(file, bytes);
+        checksums.put(file.getPath(), checksum);
+    }
+
+    /** Writes to a temporary file, syncs it and renames it to the target file,
+     * so the target file has either old or new content even if the process is killed while writing */
+    private static void writeAtomically(File file, byte[] bytes) throws IOException {
+        File tmpFile = new File(file.getPath() + TMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(tmpFile, false)) {
+            out.write(bytes);
+            out.flush();
+            out.getFD().sync();
+        }
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("Failed to rename " + tmpFile.getAbsolutePath() + " to " + file.getName());
         }
     }
 
+    private static long checksum(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        return ((long) bytes.length << 32) | crc32.getValue();
+    }
+
     @NonNull
     private static JSONObject getJSONObject(File file) throws IOException {
         if(file.exists()) {
-            String fileString = utf8File2String(file);
+            byte[] bytes = getBytes(file);
+            checksums.put(file.getPath(), checksum(bytes));
+            String fileString = new String(bytes, Charset.forName("UTF-8"));
             if (!TextUtils.isEmpty(fileString)) {
                 try {
                     return new JSONObject(fileString);
@@ -94,10 +168,6 @@ public class SettingsStorage {
         return new JSONObject();
     }
 
-    private static String utf8File2String(File file) throws IOException {
-        return new String(getBytes(file), Charset.forName("UTF-8"));
-    }
-
     /**
      * Reads the whole file
      */
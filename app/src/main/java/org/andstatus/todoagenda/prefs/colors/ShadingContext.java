@@ -0,0 +1,87 @@
+package org.andstatus.todoagenda.prefs.colors;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.view.ContextThemeWrapper;
+
+import androidx.annotation.AttrRes;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Theme context of a {@link Shading}, which remembers values of theme attributes, resolved in it.
+ * One context per base context and Shading is cached, so different base contexts don't evict each other.
+ * A cached context is replaced, when the configuration (e.g. the dark mode) of its base context changes.
+ */
+public class ShadingContext extends ContextThemeWrapper {
+    private static final int MAX_SIZE = 4 * Shading.values().length;
+    /** Least recently used contexts are removed, when there are more than {@link #MAX_SIZE} of them */
+    private static final Map<Key, ShadingContext> contexts = new LinkedHashMap<Key, ShadingContext>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ShadingContext> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    public final Shading shading;
+    private final Configuration configuration;
+    private final Map<Integer, Integer> colors = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> resourceIds = new ConcurrentHashMap<>();
+
+    /** The base context is compared by identity */
+    private static class Key {
+        final Context base;
+        final Shading shading;
+
+        Key(Context base, Shading shading) {
+            this.base = base;
+            this.shading = shading;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key that = (Key) o;
+            return base == that.base && shading == that.shading;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(base) + shading.hashCode();
+        }
+    }
+
+    private ShadingContext(Context base, Shading shading, Configuration configuration) {
+        super(base, shading.themeResId);
+        this.shading = shading;
+        this.configuration = new Configuration(configuration);
+    }
+
+    public static ShadingContext of(Context base, Shading shading) {
+        Configuration configuration = base.getResources().getConfiguration();
+        Key key = new Key(base, shading);
+        synchronized (contexts) {
+            ShadingContext context = contexts.get(key);
+            if (context == null || context.configuration.diff(configuration) != 0) {
+                context = new ShadingContext(base, shading, configuration);
+                contexts.put(key, context);
+            }
+            return context;
+        }
+    }
+
+    /** @param resolver resolves the attribute in this context, if it is not resolved yet */
+    public int getAttrColor(@AttrRes int attrId, IntUnaryOperator resolver) {
+        return colors.computeIfAbsent(attrId, resolver::applyAsInt);
+    }
+
+    /** @param resolver resolves the attribute in this context, if it is not resolved yet */
+    public int getAttrResourceId(@AttrRes int attrId, IntUnaryOperator resolver) {
+        return resourceIds.computeIfAbsent(attrId, resolver::applyAsInt);
+    }
+}
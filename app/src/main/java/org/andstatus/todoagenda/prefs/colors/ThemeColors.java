@@ -146,13 +146,29 @@ public class ThemeColors {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        ThemeColors settings = (ThemeColors) o;
-        return toJson(new JSONObject()).toString().equals(settings.toJson(new JSONObject()).toString());
+        ThemeColors that = (ThemeColors) o;
+        if (textColorSource != that.textColorSource) return false;
+
+        for (BackgroundColorPref pref: BackgroundColorPref.values()) {
+            if (getBackgroundColor(pref) != that.getBackgroundColor(pref)) return false;
+        }
+        for (TextColorPref pref: TextColorPref.values()) {
+            if (getTextShadingStored(pref).shading != that.getTextShadingStored(pref).shading) return false;
+            if (getTextColorStored(pref).color != that.getTextColorStored(pref).color) return false;
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return toJson(new JSONObject()).toString().hashCode();
+        int result = textColorSource.hashCode();
+        for (BackgroundColorPref pref: BackgroundColorPref.values()) {
+            result = 31 * result + getBackgroundColor(pref);
+        }
+        for (TextColorPref pref: TextColorPref.values()) {
+            result = 31 * result + getTextColorStored(pref).color;
+        }
+        return result;
     }
 
     public int getTextColor(TextColorPref textColorPref, @AttrRes int colorAttrId) {
@@ -194,7 +210,7 @@ public class ThemeColors {
     }
 
     public ContextThemeWrapper getThemeContext(TextColorPref pref) {
-        return new ContextThemeWrapper(context, getShading(pref).themeResId);
+        return ShadingContext.of(context, getShading(pref));
     }
 
 }
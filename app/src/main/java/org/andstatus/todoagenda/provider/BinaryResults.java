@@ -0,0 +1,232 @@
+package org.andstatus.todoagenda.provider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of query results, used to store results of snapshots.
+ * Numbers are written as variable length integers. Strings are interned: the first occurrence of a string
+ * is written in full, subsequent ones as an index of the first occurrence.
+ * Each result is written as a separate segment with its own strings, prefixed with its provider type and length,
+ * so a result can be read without reading preceding results, see {@link SnapshotFile}.
+ * The format is versioned, JSON is still used to share results.
+ */
+class BinaryResults {
+    static final int MAGIC = 0x54414452;
+    static final int VERSION = 2;
+
+    private static final int STRING_NULL = 0;
+    private static final int STRING_NEW = 1;
+    private static final int STRING_INDEX_OFFSET = 2;
+
+    private BinaryResults() {
+        // Empty
+    }
+
+    static class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        Writer() throws IOException {
+            this(true);
+        }
+
+        private Writer(boolean withHeader) throws IOException {
+            if (withHeader) {
+                out.writeInt(MAGIC);
+                writeVarLong(VERSION);
+            }
+        }
+
+        /** Writer of a segment, which has no header */
+        static Writer segment() throws IOException {
+            return new Writer(false);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            long zigZag = (value << 1) ^ (value >> 63);
+            while ((zigZag & ~0x7FL) != 0) {
+                out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+                zigZag >>>= 7;
+            }
+            out.writeByte((int) zigZag);
+        }
+
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarLong(STRING_NULL);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index == null) {
+                strings.put(value, strings.size());
+                writeVarLong(STRING_NEW);
+                writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            } else {
+                writeVarLong(index + STRING_INDEX_OFFSET);
+            }
+        }
+
+        void writeStrings(String[] values) throws IOException {
+            writeVarLong(values == null ? -1 : values.length);
+            if (values != null) {
+                for (String value : values) {
+                    writeString(value);
+                }
+            }
+        }
+
+        void writeBytes(byte[] value) throws IOException {
+            writeVarLong(value.length);
+            out.write(value);
+        }
+
+        byte[] toByteArray() throws IOException {
+            out.flush();
+            return bytes.toByteArray();
+        }
+    }
+
+    static class Reader {
+        final DataInputStream in;
+        private final CountingInputStream counting;
+        private final long length;
+        private final List<String> strings = new ArrayList<>();
+
+        Reader(byte[] bytes) throws IOException {
+            this(new ByteArrayInputStream(bytes), bytes.length, true);
+        }
+
+        Reader(InputStream stream, long length, boolean withHeader) throws IOException {
+            counting = new CountingInputStream(stream);
+            in = new DataInputStream(counting);
+            this.length = length;
+            if (withHeader) {
+                int magic = in.readInt();
+                if (magic != MAGIC) throw new IOException("Not binary results, magic: " + Integer.toHexString(magic));
+
+                long version = readVarLong();
+                if (version != VERSION) throw new IOException("Unsupported version of binary results: " + version);
+            }
+        }
+
+        /** Reader of a segment, which has no header */
+        static Reader segment(byte[] bytes) throws IOException {
+            return new Reader(new ByteArrayInputStream(bytes), bytes.length, false);
+        }
+
+        /** Number of bytes read so far, including the header */
+        long position() {
+            return counting.count;
+        }
+
+        long readVarLong() throws IOException {
+            long zigZag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                zigZag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigZag >>> 1) ^ -(zigZag & 1);
+                }
+            }
+            throw new IOException("Malformed variable length number");
+        }
+
+        int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        String readString() throws IOException {
+            int code = readVarInt();
+            switch (code) {
+                case STRING_NULL:
+                    return null;
+                case STRING_NEW:
+                    String value = new String(readBytes(), StandardCharsets.UTF_8);
+                    strings.add(value);
+                    return value;
+                default:
+                    int index = code - STRING_INDEX_OFFSET;
+                    if (index < 0 || index >= strings.size()) throw new IOException("Wrong string index " + index);
+                    return strings.get(index);
+            }
+        }
+
+        String[] readStrings() throws IOException {
+            int length = readVarInt();
+            if (length < 0) return null;
+
+            String[] values = new String[length];
+            for (int ind = 0; ind < length; ind++) {
+                values[ind] = readString();
+            }
+            return values;
+        }
+
+        byte[] readBytes() throws IOException {
+            int size = readBytesLength();
+            byte[] value = new byte[size];
+            in.readFully(value);
+            return value;
+        }
+
+        /** Skips bytes, written by {@link Writer#writeBytes(byte[])}
+         * @return number of skipped bytes */
+        int skipBytes() throws IOException {
+            int size = readBytesLength();
+            int skipped = 0;
+            while (skipped < size) {
+                int count = in.skipBytes(size - skipped);
+                if (count <= 0) throw new IOException("Skipped only " + skipped + " of " + size + " bytes");
+                skipped += count;
+            }
+            return size;
+        }
+
+        private int readBytesLength() throws IOException {
+            int size = readVarInt();
+            if (size < 0 || size > length - position()) throw new IOException("Wrong length " + size);
+            return size;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.andstatus.todoagenda.provider;
+
+import android.database.Cursor;
+
+import androidx.annotation.Nullable;
+
+import static android.database.Cursor.FIELD_TYPE_NULL;
+
+/**
+ * Indexes of columns in a cursor, resolved once per cursor, so that mapping of each row
+ * doesn't need to look up columns by name.
+ * A column is referred to by its position in the array of column names, passed to the constructor.
+ * Not thread safe: create one instance per query.
+ */
+public class CursorColumns {
+    private final String[] columnNames;
+    private final int[] indexes;
+    private Cursor resolvedFor = null;
+
+    public CursorColumns(String... columnNames) {
+        this.columnNames = columnNames;
+        indexes = new int[columnNames.length];
+    }
+
+    /** Resolves indexes, if the cursor differs from the previous one */
+    public CursorColumns of(Cursor cursor) {
+        if (cursor != resolvedFor) {
+            for (int column = 0; column < columnNames.length; column++) {
+                indexes[column] = cursor.getColumnIndex(columnNames[column]);
+            }
+            resolvedFor = cursor;
+        }
+        return this;
+    }
+
+    /** @return index of the column in the cursor or -1 if the cursor doesn't have it */
+    public int index(int column) {
+        return indexes[column];
+    }
+
+    public boolean isNull(Cursor cursor, int column) {
+        int index = indexes[column];
+        return index < 0 || cursor.getType(index) == FIELD_TYPE_NULL;
+    }
+
+    public int getInt(Cursor cursor, int column) {
+        return cursor.getInt(indexes[column]);
+    }
+
+    public long getLong(Cursor cursor, int column) {
+        return cursor.getLong(indexes[column]);
+    }
+
+    public String getString(Cursor cursor, int column) {
+        return cursor.getString(indexes[column]);
+    }
+
+    /** The same as {@link EventProvider#getPositiveLongOrNull(Cursor, String)} */
+    @Nullable
+    public Long getPositiveLongOrNull(Cursor cursor, int column) {
+        if (isNull(cursor, column)) return null;
+
+        long value = cursor.getLong(indexes[column]);
+        return value > 0 ? value : null;
+    }
+}
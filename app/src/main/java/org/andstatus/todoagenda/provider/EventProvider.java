@@ -67,6 +67,12 @@ public class EventProvider {
         return myContentResolver.getSettings();
     }
 
+    /** The provider will use these settings instead of current settings of its widget */
+    public EventProvider bindSettings(@NonNull InstanceSettings settings) {
+        myContentResolver.bindSettings(settings);
+        return this;
+    }
+
     protected int getAsOpaque(int color) {
         return argb(255, red(color), green(color), blue(color));
     }
@@ -10,15 +10,18 @@ import androidx.annotation.NonNull;
 import org.andstatus.todoagenda.EnvironmentChangedReceiver;
 import org.andstatus.todoagenda.calendar.CalendarEventProvider;
 import org.andstatus.todoagenda.calendar.CalendarEventVisualizer;
+import org.andstatus.todoagenda.prefs.InstanceSettings;
 import org.andstatus.todoagenda.prefs.OrderedEventSource;
 import org.andstatus.todoagenda.task.TaskVisualizer;
 import org.andstatus.todoagenda.task.astrid.AstridCloneTasksProvider;
 import org.andstatus.todoagenda.task.dmfs.DmfsOpenTasksContract;
 import org.andstatus.todoagenda.task.dmfs.DmfsOpenTasksProvider;
 import org.andstatus.todoagenda.task.samsung.SamsungTasksProvider;
+import org.andstatus.todoagenda.util.StringUtil;
 import org.andstatus.todoagenda.widget.WidgetEntry;
 import org.andstatus.todoagenda.widget.WidgetEntryVisualizer;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -67,9 +70,12 @@ public enum EventProviderType {
     public final String permission;
     private final String authority;
 
-    private static List<OrderedEventSource> sources = new CopyOnWriteArrayList<>();
+    private static volatile List<OrderedEventSource> sources = new CopyOnWriteArrayList<>();
     private static Set<String> permissionsNeeded = new CopyOnWriteArraySet<>();
     private static volatile boolean initialized = false;
+    /** If not null, sources are fetched using this context, when they are needed for the first time */
+    private static volatile Context contextToInitialize = null;
+    private static final Object fetchLock = new Object();
 
     EventProviderType(int id, boolean isCalendar, String permission, String authority) {
         this.id = id;
@@ -78,10 +84,39 @@ public enum EventProviderType {
         this.authority = authority;
     }
 
+    /** Available sources are not fetched here, but when they are needed for the first time */
     public static void initialize(Context context, boolean reInitialize) {
-        if (initialized && !reInitialize) return;
+        synchronized (permissionsNeeded) {
+            if (initialized && !reInitialize) return;
 
-        sources.clear();
+            contextToInitialize = context;
+            initialized = false;
+        }
+    }
+
+    /** Sources are fetched once per {@link #initialize(Context, boolean)}, other threads wait for them.
+     * The fetch lock is separate, so initialization is not blocked by a fetch.
+     * Sources are fetched for widgetId=0, so fetching doesn't need settings of widgets */
+    private static void ensureInitialized() {
+        if (initialized || contextToInitialize == null) return;
+
+        synchronized (fetchLock) {
+            Context context = contextToInitialize;
+            if (initialized || context == null) return;
+
+            List<OrderedEventSource> fetched = fetchAvailableSources(context);
+            synchronized (permissionsNeeded) {
+                if (contextToInitialize == context) {
+                    sources = fetched;
+                    contextToInitialize = null;
+                    initialized = true;
+                }
+            }
+        }
+    }
+
+    private static List<OrderedEventSource> fetchAvailableSources(Context context) {
+        List<OrderedEventSource> sources = new CopyOnWriteArrayList<>();
         for(EventProviderType type : EventProviderType.values()) {
             EventProvider provider = type.getEventProvider(context, 0);
             provider.fetchAvailableSources()
@@ -97,7 +132,7 @@ public enum EventProviderType {
                 }
             });
         }
-        initialized = true;
+        return sources;
     }
 
     @NonNull
@@ -108,34 +143,54 @@ public enum EventProviderType {
         return EMPTY;
     }
 
+    /** Types of providers, which may send PROVIDER_CHANGED broadcasts with this authority */
+    @NonNull
+    public static List<EventProviderType> fromAuthority(String authority) {
+        List<EventProviderType> types = new ArrayList<>();
+        if (StringUtil.isEmpty(authority)) return types;
+
+        for(EventProviderType type : EventProviderType.values()) {
+            if(type.authority.equals(authority)) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
     @NonNull
     public static Set<String> getNeededPermissions() {
+        ensureInitialized();
         return permissionsNeeded;
     }
 
     public static List<OrderedEventSource> getAvailableSources() {
+        ensureInitialized();
         return sources;
     }
 
     public static void forget() {
-        sources.clear();
-        permissionsNeeded.clear();
-        initialized = false;
+        synchronized (permissionsNeeded) {
+            sources = new CopyOnWriteArrayList<>();
+            permissionsNeeded.clear();
+            contextToInitialize = null;
+            initialized = false;
+        }
     }
 
     public EventProvider getEventProvider(Context context, int widgetId) {
         return new EventProvider(this, context, widgetId);
     }
 
-    public WidgetEntryVisualizer<? extends WidgetEntry> getVisualizer(Context context, int widgetId) {
-        EventProvider eventProvider = getEventProvider(context, widgetId);
+    public WidgetEntryVisualizer<? extends WidgetEntry> getVisualizer(InstanceSettings settings) {
+        EventProvider eventProvider = getEventProvider(settings.getContext(), settings.getWidgetId())
+                .bindSettings(settings);
         return isCalendar
             ? new CalendarEventVisualizer(eventProvider)
             : new TaskVisualizer(eventProvider);
     }
 
     public boolean hasEventSources() {
-        for(OrderedEventSource orderedSource: sources) {
+        for(OrderedEventSource orderedSource: getAvailableSources()) {
             if (orderedSource.source.providerType == this) return true;
         }
         return false;
@@ -0,0 +1,75 @@
+package org.andstatus.todoagenda.provider;
+
+import android.util.JsonWriter;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Writes parts of JSON documents to a {@link JsonWriter}, so large documents are streamed
+ * and don't need to be built in memory as a whole.
+ */
+class JsonStreams {
+
+    private JsonStreams() {
+        // Empty
+    }
+
+    static void writeValue(JsonWriter writer, Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            writer.nullValue();
+        } else if (value instanceof JSONObject) {
+            writeObject(writer, (JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            writeArray(writer, (JSONArray) value);
+        } else if (value instanceof Boolean) {
+            writer.value((Boolean) value);
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else {
+            writer.value(value.toString());
+        }
+    }
+
+    static void writeObject(JsonWriter writer, JSONObject json) throws IOException {
+        writer.beginObject();
+        writeMembers(writer, json);
+        writer.endObject();
+    }
+
+    /** Members of the object, without enclosing braces */
+    static void writeMembers(JsonWriter writer, JSONObject json) throws IOException {
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            writer.name(key);
+            writeValue(writer, json.opt(key));
+        }
+    }
+
+    static void writeArray(JsonWriter writer, JSONArray jsonArray) throws IOException {
+        writer.beginArray();
+        for (int ind = 0; ind < jsonArray.length(); ind++) {
+            writeValue(writer, jsonArray.opt(ind));
+        }
+        writer.endArray();
+    }
+
+    static void writeStrings(JsonWriter writer, String[] array) throws IOException {
+        writer.beginArray();
+        if (array != null) {
+            for (String item : array) {
+                writer.value(item);
+            }
+        }
+        writer.endArray();
+    }
+
+    static IOException toIOException(JSONException e) {
+        return new IOException(e.getMessage(), e);
+    }
+}
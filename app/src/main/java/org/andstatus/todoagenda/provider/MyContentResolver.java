@@ -1,5 +1,6 @@
 package org.andstatus.todoagenda.provider;
 
+import android.content.ContentUris;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
@@ -16,6 +17,7 @@ import org.andstatus.todoagenda.util.PermissionsUtil;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import io.vavr.control.Try;
 
@@ -30,7 +32,7 @@ public class MyContentResolver {
     final Context context;
     final int widgetId;
     private final AtomicInteger requestsCounter = new AtomicInteger();
-    private final LazyVal<InstanceSettings> settingsLazyVal;
+    private volatile LazyVal<InstanceSettings> settingsLazyVal;
 
     public MyContentResolver(EventProviderType type, Context context, int widgetId) {
         this.type = type;
@@ -44,6 +46,11 @@ public class MyContentResolver {
         return settingsLazyVal.get();
     }
 
+    /** Binds settings, which are used during a reload, so they are not looked up for each query */
+    void bindSettings(@NonNull InstanceSettings settings) {
+        settingsLazyVal = LazyVal.of(() -> settings);
+    }
+
     public boolean isPermissionNeeded(Context context, String permission) {
         return getSettings().isLiveMode() && PermissionsUtil.isPermissionNeeded(context, permission);
     }
@@ -84,12 +91,46 @@ public class MyContentResolver {
     public <R> R foldEvents(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
                           @Nullable String[] selectionArgs, @Nullable String sortOrder,
                                   R identity, Function<R, Function<Cursor, R>> foldingFunction) {
+        return foldEvents(null, uri, projection, selection, selectionArgs, sortOrder, identity, foldingFunction);
+    }
+
+    /** The same as {@link #foldEvents(Uri, String[], String, String[], String, Object, Function)},
+     * but rows of the query may be shared with other widgets via {@link QueryResultsCache}
+     * @param uri of the requested rows. It is queried, when results are stored, so stored results have this uri
+     * @param sharedUri of the shared query, which returns all rows of the requested query */
+    public <R> R foldSharedEvents(@NonNull Uri uri, @NonNull Uri sharedUri, @Nullable String[] projection,
+                                  @Nullable String selection, @Nullable String[] selectionArgs,
+                                  @Nullable String sortOrder,
+                                  R identity, Function<R, Function<Cursor, R>> foldingFunction) {
+        return foldEvents(() -> QueryResultsCache.get(this, sharedUri, projection, selection, selectionArgs,
+                sortOrder).query(projection), uri, projection, selection, selectionArgs, sortOrder, identity,
+                foldingFunction);
+    }
+
+    /** Folds events from the start of time to the endMillis.
+     * Rows of previous such queries are reused via {@link QueryResultsCache}, so only recent events are queried
+     * @param contentUri to which start and end of the time range are appended */
+    public <R> R foldEventsUntil(@NonNull Uri contentUri, long endMillis, @Nullable String[] projection,
+                                 @Nullable String selection, @Nullable String sortOrder,
+                                 R identity, Function<R, Function<Cursor, R>> foldingFunction) {
+        Uri.Builder builder = contentUri.buildUpon();
+        ContentUris.appendId(builder, 0);
+        ContentUris.appendId(builder, endMillis);
+        return foldEvents(() -> QueryResultsCache.queryUntil(this, contentUri, endMillis, projection, selection,
+                sortOrder), builder.build(), projection, selection, null, sortOrder, identity, foldingFunction);
+    }
+
+    /** @param cachedQuery if not null, is used instead of a direct query of the provider */
+    private <R> R foldEvents(@Nullable Supplier<Cursor> cachedQuery, @NonNull Uri uri, @Nullable String[] projection,
+                             @Nullable String selection, @Nullable String[] selectionArgs, @Nullable String sortOrder,
+                             R identity, Function<R, Function<Cursor, R>> foldingFunction) {
         R folded = identity;
         boolean needToStoreResults = QueryResultsStorage.getNeedToStoreResults(widgetId);
         QueryResult result = needToStoreResults
                 ? new QueryResult(type, getSettings(), uri, projection, selection, null, sortOrder)
                 : null;
-        try (Cursor cursor = queryForEvents(uri, projection, selection, selectionArgs, sortOrder)) {
+        try (Cursor cursor = queryForEvents(needToStoreResults ? null : cachedQuery, uri, projection, selection,
+                selectionArgs, sortOrder)) {
             if (cursor != null) {
                 for (int i = 0; i < cursor.getCount(); i++) {
                     cursor.moveToPosition(i);
@@ -109,11 +150,15 @@ public class MyContentResolver {
         return folded;
     }
 
-    private Cursor queryForEvents(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
-                                  @Nullable String[] selectionArgs, @Nullable String sortOrder) {
-        return widgetId != 0 && getSettings().isSnapshotMode()
-                ? getSettings().getResultsStorage().getResult(type, requestsCounter.incrementAndGet() - 1)
-                    .map(r -> r.query(projection)).orElse(null)
+    private Cursor queryForEvents(@Nullable Supplier<Cursor> cachedQuery, @NonNull Uri uri, @Nullable String[] projection,
+                                  @Nullable String selection, @Nullable String[] selectionArgs,
+                                  @Nullable String sortOrder) {
+        if (widgetId != 0 && getSettings().isSnapshotMode()) {
+            return getSettings().getResultsStorage().getResult(type, requestsCounter.incrementAndGet() - 1)
+                    .map(r -> r.query(projection)).orElse(null);
+        }
+        return cachedQuery != null
+                ? cachedQuery.get()
                 : context.getContentResolver().query(uri, projection, selection, selectionArgs, sortOrder);
     }
 }
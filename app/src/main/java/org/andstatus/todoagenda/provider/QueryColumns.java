@@ -0,0 +1,487 @@
+package org.andstatus.todoagenda.provider;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar copy of rows of a {@link QueryResult}: one growable primitive array per column plus a bitmap of nulls,
+ * so replaying a stored result doesn't box values or build a row array per query, and appending rows
+ * doesn't copy the earlier ones.
+ * Cursors, returned by {@link #query(String[])}, read the columns directly, without copying.
+ * Values are returned the same way, as {@link android.database.MatrixCursor} returns them.
+ */
+class QueryColumns {
+    private static final Column NULL_COLUMN = new ObjectColumn();
+    private static final int INITIAL_CAPACITY = 16;
+    static final QueryColumns EMPTY = new QueryColumns(0, Collections.emptyMap());
+
+    final int rowCount;
+    private final Map<String, Column> columns;
+
+    private QueryColumns(int rowCount, Map<String, Column> columns) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+    }
+
+    static QueryColumns of(List<QueryRow> rows) {
+        return EMPTY.plus(rows);
+    }
+
+    /** @return new columns with the rows appended to these ones.
+     * The rows are appended to growable columns in place: rows of these columns are neither copied nor boxed,
+     * and cursors of these columns don't see the appended rows. Only a column, to which other rows
+     * were appended already, is copied. Rows should be appended by one thread at a time */
+    QueryColumns plus(List<QueryRow> rows) {
+        if (rows.isEmpty()) return this;
+
+        Map<String, Column> newColumns = new LinkedHashMap<>();
+        for (Map.Entry<String, Column> entry : columns.entrySet()) {
+            Column column = entry.getValue();
+            newColumns.put(entry.getKey(), column.size() == rowCount ? column : column.copy(rowCount));
+        }
+        int newCount = rowCount;
+        for (QueryRow row : rows) {
+            if (row != null) {
+                for (String columnName : row.getColumnNames()) {
+                    Column column = newColumns.get(columnName);
+                    if (column == null) {
+                        column = new LongColumn();
+                    }
+                    newColumns.put(columnName, column.append(newCount, row.get(columnName)));
+                }
+            }
+            newCount++;
+        }
+        for (Column column : newColumns.values()) {
+            column.appendNulls(newCount);
+        }
+        return new QueryColumns(newCount, newColumns);
+    }
+
+    /** @param projection if null, all columns are returned */
+    Cursor query(String[] projection) {
+        if (projection == null) {
+            projection = columns.keySet().toArray(new String[0]);
+        }
+        Column[] projected = new Column[projection.length];
+        for (int ind = 0; ind < projection.length; ind++) {
+            Column column = columns.get(projection[ind]);
+            projected[ind] = column == null ? NULL_COLUMN : column;
+        }
+        return new ColumnsCursor(projection, projected, rowCount);
+    }
+
+    private static int newCapacity(int capacity, int minCapacity) {
+        return Math.max(minCapacity, Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1)));
+    }
+
+    private static boolean isLong(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    /** Values of rows below {@link #size()} are not changed, when other rows are appended.
+     * Arrays are replaced by larger copies, when they grow, so readers of the earlier rows don't lock */
+    private abstract static class Column {
+        protected int size = 0;
+
+        int size() {
+            return size;
+        }
+
+        /** Appends nulls up to the row and the value at the row
+         * @return this column or a column of another type with all values of this one, if the value needs it */
+        abstract Column append(int row, Object value);
+
+        /** Appends nulls up to the size */
+        abstract void appendNulls(int size);
+
+        /** @return a column with the first rows of this one */
+        abstract Column copy(int size);
+
+        abstract boolean isNull(int row);
+
+        abstract Object get(int row);
+
+        /** Values are boxed once, when a column of a primitive type receives a value of another type */
+        ObjectColumn toObjectColumn() {
+            ObjectColumn column = new ObjectColumn();
+            for (int row = 0; row < size; row++) {
+                column.append(row, get(row));
+            }
+            return column;
+        }
+
+        int getType(int row) {
+            Object value = get(row);
+            if (value == null) return Cursor.FIELD_TYPE_NULL;
+            if (value instanceof byte[]) return Cursor.FIELD_TYPE_BLOB;
+            if (value instanceof Float || value instanceof Double) return Cursor.FIELD_TYPE_FLOAT;
+            if (isLong(value)) return Cursor.FIELD_TYPE_INTEGER;
+            return Cursor.FIELD_TYPE_STRING;
+        }
+
+        String getString(int row) {
+            Object value = get(row);
+            return value == null ? null : value.toString();
+        }
+
+        long getLong(int row) {
+            Object value = get(row);
+            if (value == null) return 0;
+            if (value instanceof Number) return ((Number) value).longValue();
+            return Long.parseLong(value.toString());
+        }
+
+        double getDouble(int row) {
+            Object value = get(row);
+            if (value == null) return 0;
+            if (value instanceof Number) return ((Number) value).doubleValue();
+            return Double.parseDouble(value.toString());
+        }
+
+        byte[] getBlob(int row) {
+            return (byte[]) get(row);
+        }
+    }
+
+    /** Growable bitmap of rows with null values */
+    private static class Nulls {
+        private volatile long[] words;
+
+        Nulls(long[] words) {
+            this.words = words;
+        }
+
+        boolean get(int row) {
+            long[] bits = words;
+            int index = row >>> 6;
+            return index < bits.length && (bits[index] & (1L << row)) != 0;
+        }
+
+        void set(int row) {
+            int index = row >>> 6;
+            long[] bits = words;
+            if (index >= bits.length) {
+                bits = Arrays.copyOf(bits, newCapacity(bits.length, index + 1));
+                words = bits;
+            }
+            bits[index] |= 1L << row;
+        }
+
+        void set(int fromRow, int toRow) {
+            for (int row = fromRow; row < toRow; row++) {
+                set(row);
+            }
+        }
+
+        Nulls copy(int size) {
+            long[] bits = Arrays.copyOf(words, (size + 63) >>> 6);
+            if ((size & 63) != 0 && bits.length > 0) {
+                bits[bits.length - 1] &= (1L << size) - 1;
+            }
+            return new Nulls(bits);
+        }
+    }
+
+    private static class LongColumn extends Column {
+        private volatile long[] values;
+        private final Nulls nulls;
+        private boolean hasValues;
+
+        LongColumn() {
+            this(new long[INITIAL_CAPACITY], new Nulls(new long[1]), 0, false);
+        }
+
+        private LongColumn(long[] values, Nulls nulls, int size, boolean hasValues) {
+            this.values = values;
+            this.nulls = nulls;
+            this.size = size;
+            this.hasValues = hasValues;
+        }
+
+        @Override
+        Column append(int row, Object value) {
+            if (value != null && !isLong(value)) {
+                return (value instanceof Double && !hasValues
+                        ? new DoubleColumn(new double[values.length], nulls.copy(size), size)
+                        : toObjectColumn()).append(row, value);
+            }
+            appendNulls(row);
+            long[] array = ensureCapacity(row + 1);
+            if (value == null) {
+                nulls.set(row);
+            } else {
+                array[row] = ((Number) value).longValue();
+                hasValues = true;
+            }
+            size = row + 1;
+            return this;
+        }
+
+        @Override
+        void appendNulls(int size) {
+            if (size <= this.size) return;
+
+            ensureCapacity(size);
+            nulls.set(this.size, size);
+            this.size = size;
+        }
+
+        private long[] ensureCapacity(int capacity) {
+            long[] array = values;
+            if (capacity > array.length) {
+                array = Arrays.copyOf(array, newCapacity(array.length, capacity));
+                values = array;
+            }
+            return array;
+        }
+
+        @Override
+        Column copy(int size) {
+            return new LongColumn(Arrays.copyOf(values, Math.max(size, INITIAL_CAPACITY)), nulls.copy(size), size,
+                    hasValues);
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        int getType(int row) {
+            return nulls.get(row) ? Cursor.FIELD_TYPE_NULL : Cursor.FIELD_TYPE_INTEGER;
+        }
+
+        @Override
+        String getString(int row) {
+            return nulls.get(row) ? null : Long.toString(values[row]);
+        }
+
+        @Override
+        long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        private volatile double[] values;
+        private final Nulls nulls;
+
+        private DoubleColumn(double[] values, Nulls nulls, int size) {
+            this.values = values;
+            this.nulls = nulls;
+            this.size = size;
+        }
+
+        @Override
+        Column append(int row, Object value) {
+            if (value != null && !(value instanceof Double)) {
+                return toObjectColumn().append(row, value);
+            }
+            appendNulls(row);
+            double[] array = ensureCapacity(row + 1);
+            if (value == null) {
+                nulls.set(row);
+            } else {
+                array[row] = (Double) value;
+            }
+            size = row + 1;
+            return this;
+        }
+
+        @Override
+        void appendNulls(int size) {
+            if (size <= this.size) return;
+
+            ensureCapacity(size);
+            nulls.set(this.size, size);
+            this.size = size;
+        }
+
+        private double[] ensureCapacity(int capacity) {
+            double[] array = values;
+            if (capacity > array.length) {
+                array = Arrays.copyOf(array, newCapacity(array.length, capacity));
+                values = array;
+            }
+            return array;
+        }
+
+        @Override
+        Column copy(int size) {
+            return new DoubleColumn(Arrays.copyOf(values, Math.max(size, INITIAL_CAPACITY)), nulls.copy(size), size);
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        int getType(int row) {
+            return nulls.get(row) ? Cursor.FIELD_TYPE_NULL : Cursor.FIELD_TYPE_FLOAT;
+        }
+
+        @Override
+        String getString(int row) {
+            return nulls.get(row) ? null : Double.toString(values[row]);
+        }
+
+        @Override
+        long getLong(int row) {
+            return (long) values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+    }
+
+    /** Strings, blobs and columns of mixed types */
+    private static class ObjectColumn extends Column {
+        private volatile Object[] values;
+
+        ObjectColumn() {
+            this(new Object[0], 0);
+        }
+
+        private ObjectColumn(Object[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        Column append(int row, Object value) {
+            Object[] array = values;
+            if (row >= array.length) {
+                array = Arrays.copyOf(array, newCapacity(array.length, row + 1));
+                values = array;
+            }
+            array[row] = value;
+            size = row + 1;
+            return this;
+        }
+
+        @Override
+        void appendNulls(int size) {
+            if (size > this.size) {
+                this.size = size;
+            }
+        }
+
+        @Override
+        Column copy(int size) {
+            return new ObjectColumn(Arrays.copyOf(values, size), size);
+        }
+
+        @Override
+        ObjectColumn toObjectColumn() {
+            return this;
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return get(row) == null;
+        }
+
+        @Override
+        Object get(int row) {
+            Object[] array = values;
+            return row < array.length ? array[row] : null;
+        }
+    }
+
+    private static class ColumnsCursor extends AbstractCursor {
+        private final String[] columnNames;
+        private final Column[] columns;
+        private final int count;
+
+        ColumnsCursor(String[] columnNames, Column[] columns, int count) {
+            this.columnNames = columnNames;
+            this.columns = columns;
+            this.count = count;
+        }
+
+        private Column column(int columnIndex) {
+            checkPosition();
+            return columns[columnIndex];
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return columnNames;
+        }
+
+        @Override
+        public int getType(int columnIndex) {
+            return column(columnIndex).getType(mPos);
+        }
+
+        @Override
+        public boolean isNull(int columnIndex) {
+            return column(columnIndex).isNull(mPos);
+        }
+
+        @Override
+        public String getString(int columnIndex) {
+            return column(columnIndex).getString(mPos);
+        }
+
+        @Override
+        public short getShort(int columnIndex) {
+            return (short) column(columnIndex).getLong(mPos);
+        }
+
+        @Override
+        public int getInt(int columnIndex) {
+            return (int) column(columnIndex).getLong(mPos);
+        }
+
+        @Override
+        public long getLong(int columnIndex) {
+            return column(columnIndex).getLong(mPos);
+        }
+
+        @Override
+        public float getFloat(int columnIndex) {
+            return (float) column(columnIndex).getDouble(mPos);
+        }
+
+        @Override
+        public double getDouble(int columnIndex) {
+            return column(columnIndex).getDouble(mPos);
+        }
+
+        @Override
+        public byte[] getBlob(int columnIndex) {
+            return column(columnIndex).getBlob(mPos);
+        }
+    }
+}
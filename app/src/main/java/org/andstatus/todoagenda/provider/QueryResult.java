@@ -4,6 +4,7 @@ import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.net.Uri;
 import android.text.TextUtils;
+import android.util.JsonWriter;
 import android.util.Log;
 
 import org.andstatus.todoagenda.prefs.InstanceSettings;
@@ -14,6 +15,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -47,6 +49,8 @@ public class QueryResult {
     private String[] selectionArgs = {};
     private String sortOrder = "";
     private final List<QueryRow> rows = new ArrayList<>();
+    /** Columnar copy of the rows, built by the first query. It is dropped, when rows are added or changed */
+    private QueryColumns columns = null;
 
     public QueryResult(EventProviderType providerType, InstanceSettings settings, Uri uri, String[] projection,
                        String selection, String[] selectionArgs, String sortOrder) {
@@ -85,6 +89,39 @@ public class QueryResult {
         return result;
     }
 
+    void writeTo(BinaryResults.Writer writer) throws IOException {
+        writer.writeVarLong(providerType.id);
+        writer.writeVarLong(executedAt.getMillis());
+        writer.writeString(executedAt.getZone().getID());
+        writer.writeString(uri != null ? uri.toString() : "");
+        writer.writeStrings(projection);
+        writer.writeString(selection != null ? selection : "");
+        writer.writeStrings(selectionArgs);
+        writer.writeString(sortOrder != null ? sortOrder : "");
+        writer.writeVarLong(rows.size());
+        for (QueryRow row : rows) {
+            row.writeTo(writer);
+        }
+    }
+
+    static QueryResult readFrom(BinaryResults.Reader reader, int widgetId) throws IOException {
+        EventProviderType providerType = EventProviderType.fromId(reader.readVarInt());
+        long executedAtMillis = reader.readVarLong();
+        String zoneId = DateUtil.validatedTimeZoneId(reader.readString());
+        QueryResult result = new QueryResult(providerType, widgetId,
+                new DateTime(executedAtMillis, DateTimeZone.forID(TextUtils.isEmpty(zoneId) ? "UTC" : zoneId)));
+        result.uri = Uri.parse(reader.readString());
+        result.projection = reader.readStrings();
+        result.selection = reader.readString();
+        result.selectionArgs = reader.readStrings();
+        result.sortOrder = reader.readString();
+        int size = reader.readVarInt();
+        for (int ind = 0; ind < size; ind++) {
+            result.addRow(QueryRow.readFrom(reader));
+        }
+        return result;
+    }
+
     private static DateTimeZone dateTimeZoneFromJson(JSONObject json) {
         String zoneId = DateUtil.validatedTimeZoneId(json.optString(KEY_TIME_ZONE_ID));
         return DateTimeZone.forID(TextUtils.isEmpty(zoneId) ? "UTC" : zoneId);
@@ -110,11 +147,14 @@ public class QueryResult {
 
     Cursor query(String[] projectionIn) {
         String[] currentProjection = projectionIn == null ? projection : projectionIn ;
-        MatrixCursor cursor = new MatrixCursor(currentProjection);
-        for (QueryRow row : rows) {
-            cursor.addRow(row.getArray(currentProjection));
+        return getColumns().query(currentProjection);
+    }
+
+    private synchronized QueryColumns getColumns() {
+        if (columns == null) {
+            columns = QueryColumns.of(rows);
         }
-        return cursor;
+        return columns;
     }
 
     Cursor querySource(String[] projection) {
@@ -139,11 +179,13 @@ public class QueryResult {
         addRow(QueryRow.fromCursor(cursor));
     }
 
-    public void addRow(QueryRow row) {
+    /** Rows should not be changed after they were added, except by {@link #dropNullColumns()} */
+    public synchronized void addRow(QueryRow row) {
         if (projection == null && row != null) {
             projection = row.getColumnNames();
         }
         rows.add(row);
+        columns = null;
     }
 
     public Uri getUri() {
@@ -224,6 +266,35 @@ public class QueryResult {
         return json;
     }
 
+    /** The same as {@link #toJson()}, but rows are streamed one by one */
+    void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name(KEY_PROVIDER_TYPE).value(providerType.id);
+        writer.name(KEY_EXECUTED_AT).value(executedAt.getMillis());
+        DateTimeZone zone = executedAt.getZone();
+        writer.name(KEY_TIME_ZONE_ID).value(zone.getID());
+        writer.name(KEY_MILLIS_OFFSET_FROM_UTC_TO_LOCAL).value(zone.getOffset(executedAt));
+        writer.name(KEY_STANDARD_MILLIS_OFFSET_FROM_UTC_TO_LOCAL).value(zone.getStandardOffset(executedAt.getMillis()));
+        writer.name(KEY_URI).value(uri != null ? uri.toString() : "");
+        writer.name(KEY_PROJECTION);
+        JsonStreams.writeStrings(writer, projection);
+        writer.name(KEY_SELECTION).value(selection != null ? selection : "");
+        writer.name(KEY_SELECTION_ARGS);
+        JsonStreams.writeStrings(writer, selectionArgs);
+        writer.name(KEY_SORT_ORDER).value(sortOrder != null ? sortOrder : "");
+        writer.name(KEY_ROWS);
+        writer.beginArray();
+        for (QueryRow row : rows) {
+            try {
+                JsonStreams.writeObject(writer, row.toJson());
+            } catch (JSONException e) {
+                throw JsonStreams.toIOException(e);
+            }
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
     private static JSONArray arrayOfStingsToJson(String[] array) {
         JSONArray jsonArray = new JSONArray();
         if (array != null) {
@@ -234,10 +305,11 @@ public class QueryResult {
         return jsonArray;
     }
 
-    QueryResult dropNullColumns() {
+    synchronized QueryResult dropNullColumns() {
         for (QueryRow row : rows) {
             row.dropNullColumns();
         }
+        columns = null;
         return this;
     }
 }
@@ -0,0 +1,186 @@
+package org.andstatus.todoagenda.provider;
+
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.CalendarContract;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.andstatus.todoagenda.util.LazyVal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide cache of Content Provider query results, shared by all widgets.
+ * Widgets that show the same event sources for the same (day aligned) time range
+ * cost one provider query instead of one query per widget.
+ * Results of queries from the start of time to "now" are extended incrementally,
+ * see {@link #queryUntil(MyContentResolver, Uri, long, String[], String, String)}.
+ * The cache is cleared when a provider notifies us about a change.
+ */
+public class QueryResultsCache {
+    private static final String TAG = QueryResultsCache.class.getSimpleName();
+    private static final int MAX_SIZE = 64;
+
+    /** Least recently used results are removed, when there are more than {@link #MAX_SIZE} of them */
+    private static final Map<String, LazyVal<QueryColumns>> results = newLruMap();
+    private static final Map<String, ResultUntil> resultsUntil = newLruMap();
+
+    /** Rows of a query of all events, that ended before {@link #endMillis} */
+    private static class ResultUntil {
+        QueryColumns columns = QueryColumns.EMPTY;
+        long endMillis = 0;
+        /** Instances, which may be returned again by the next query, by their end.
+         * The next query returns instances, which end after the end of this one, so other keys are dropped */
+        private final Map<InstanceKey, Long> instanceEnds = new HashMap<>();
+
+        synchronized Cursor queryUntil(MyContentResolver resolver, Uri contentUri, long endMillis,
+                                       @Nullable String[] projection, @Nullable String selection,
+                                       @Nullable String sortOrder) {
+            if (endMillis > this.endMillis) {
+                // Instances, that overlap the previous end, are returned again, so we skip the ones we have
+                Uri.Builder builder = contentUri.buildUpon();
+                ContentUris.appendId(builder, this.endMillis);
+                ContentUris.appendId(builder, endMillis);
+                List<QueryRow> rows = new ArrayList<>();
+                try (Cursor cursor = resolver.context.getContentResolver()
+                        .query(builder.build(), projection, selection, null, sortOrder)) {
+                    if (cursor != null) {
+                        int eventIdIndex = cursor.getColumnIndex(CalendarContract.Instances.EVENT_ID);
+                        int beginIndex = cursor.getColumnIndex(CalendarContract.Instances.BEGIN);
+                        int endIndex = cursor.getColumnIndex(CalendarContract.Instances.END);
+                        for (int i = 0; i < cursor.getCount(); i++) {
+                            cursor.moveToPosition(i);
+                            if (eventIdIndex < 0 || beginIndex < 0 || instanceEnds.putIfAbsent(
+                                    new InstanceKey(cursor.getLong(eventIdIndex), cursor.getLong(beginIndex)),
+                                    endIndex < 0 ? Long.MAX_VALUE : cursor.getLong(endIndex)) == null) {
+                                rows.add(QueryRow.fromCursor(cursor));
+                            }
+                        }
+                    }
+                }
+                instanceEnds.values().removeIf(end -> end < endMillis);
+                columns = columns.plus(rows);
+                Log.d(TAG, resolver.type + " " + resolver.widgetId + " added " + rows.size() + " rows, " +
+                        (this.endMillis == 0 ? "" : "from:" + this.endMillis + " ") + "to:" + endMillis);
+                this.endMillis = endMillis;
+            }
+            return columns.query(projection);
+        }
+    }
+
+    /** (event_id, begin) of an instance */
+    private static class InstanceKey {
+        final long eventId;
+        final long begin;
+
+        InstanceKey(long eventId, long begin) {
+            this.eventId = eventId;
+            this.begin = begin;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            InstanceKey that = (InstanceKey) o;
+            return eventId == that.eventId && begin == that.begin;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(eventId) + Long.hashCode(begin);
+        }
+    }
+
+    private QueryResultsCache() {
+        // Empty
+    }
+
+    /** Returns rows of the cached result or queries the provider once, if there is no such result yet.
+     *  Parallel requests with the same key wait for the first one.
+     *  Only the columnar copy of the rows is kept */
+    @NonNull
+    static QueryColumns get(MyContentResolver resolver, @NonNull Uri uri, @Nullable String[] projection,
+                           @Nullable String selection, @Nullable String[] selectionArgs,
+                           @Nullable String sortOrder) {
+        String key = toKey(resolver.type, uri, projection, selection, selectionArgs, sortOrder);
+        LazyVal<QueryColumns> result;
+        synchronized (results) {
+            result = results.computeIfAbsent(key, k -> LazyVal.of(
+                    () -> query(resolver, uri, projection, selection, selectionArgs, sortOrder)));
+        }
+        return result.get();
+    }
+
+    /** Queries events from the start of time to the endMillis, which usually is "now".
+     * Only events after the end of the previous such query are queried from the provider,
+     * so years of history are not rescanned on every refresh.
+     * @param contentUri to which start and end of the time range are appended */
+    @NonNull
+    static Cursor queryUntil(MyContentResolver resolver, @NonNull Uri contentUri, long endMillis,
+                             @Nullable String[] projection, @Nullable String selection,
+                             @Nullable String sortOrder) {
+        String key = toKey(resolver.type, contentUri, projection, selection, null, sortOrder);
+        ResultUntil result;
+        synchronized (resultsUntil) {
+            result = resultsUntil.computeIfAbsent(key, k -> new ResultUntil());
+        }
+        return result.queryUntil(resolver, contentUri, endMillis, projection, selection, sortOrder);
+    }
+
+    private static QueryColumns query(MyContentResolver resolver, @NonNull Uri uri, @Nullable String[] projection,
+                                      @Nullable String selection, @Nullable String[] selectionArgs,
+                                      @Nullable String sortOrder) {
+        List<QueryRow> rows = new ArrayList<>();
+        try (Cursor cursor = resolver.context.getContentResolver()
+                .query(uri, projection, selection, selectionArgs, sortOrder)) {
+            if (cursor != null) {
+                for (int i = 0; i < cursor.getCount(); i++) {
+                    cursor.moveToPosition(i);
+                    rows.add(QueryRow.fromCursor(cursor));
+                }
+            }
+        }
+        Log.d(TAG, resolver.type + " " + resolver.widgetId + " cached " + rows.size() +
+                " rows, uri:" + uri);
+        return QueryColumns.of(rows);
+    }
+
+    private static String toKey(EventProviderType type, @NonNull Uri uri, @Nullable String[] projection,
+                                @Nullable String selection, @Nullable String[] selectionArgs,
+                                @Nullable String sortOrder) {
+        return type.id + "|" + uri + "|" + Arrays.toString(projection) + "|" + selection + "|" +
+                Arrays.toString(selectionArgs) + "|" + sortOrder;
+    }
+
+    private static <V> Map<String, V> newLruMap() {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > MAX_SIZE;
+            }
+        };
+    }
+
+    public static void clear() {
+        synchronized (results) {
+            synchronized (resultsUntil) {
+                if (!results.isEmpty() || !resultsUntil.isEmpty()) {
+                    Log.d(TAG, "Cleared " + (results.size() + resultsUntil.size()) + " results");
+                }
+                results.clear();
+                resultsUntil.clear();
+            }
+        }
+    }
+}
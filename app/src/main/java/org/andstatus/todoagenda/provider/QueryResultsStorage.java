@@ -2,9 +2,13 @@ package org.andstatus.todoagenda.provider;
 
 import android.content.Context;
 import android.content.Intent;
-import android.text.TextUtils;
+import android.net.Uri;
+import android.util.JsonWriter;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+import androidx.core.content.FileProvider;
+
 import org.andstatus.todoagenda.R;
 import org.andstatus.todoagenda.RemoteViewsFactory;
 import org.andstatus.todoagenda.prefs.AllSettings;
@@ -14,9 +18,17 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
@@ -32,12 +44,17 @@ public class QueryResultsStorage {
     private static final int RESULTS_VERSION = 3;
     private static final String KEY_RESULTS = "results";
     public static final String KEY_SETTINGS = "settings";
+    private static final String SHARED_DIR = "shared";
+    private static final long SHARED_FILES_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final String FILE_PROVIDER_SUFFIX = ".fileprovider";
 
     private static volatile QueryResultsStorage theStorage = null;
     private static volatile int widgetIdResultsToStore = 0;
 
     private final List<QueryResult> results = new CopyOnWriteArrayList<>();
     private AtomicReference<DateTime> executedAt = new AtomicReference<>(null);
+    /** If not null, results are not loaded yet, and they are read from this file on demand */
+    private volatile SnapshotFile snapshotFile = null;
 
     public static boolean store(QueryResult result) {
         QueryResultsStorage storage = theStorage;
@@ -55,21 +72,52 @@ public class QueryResultsStorage {
         QueryResultsStorage storage = settings.isSnapshotMode()
                 ? settings.getResultsStorage()
                 : getNewResults(context, widgetId);
-        String results = storage.toJsonString(context, widgetId);
-        if (TextUtils.isEmpty(results)) {
+        String fileName = (settings.getWidgetInstanceName() + "-" + context.getText(R.string.app_name))
+                .replaceAll("\\W+", "-") +
+                "-shareEvents-" + formatLogDateTime(System.currentTimeMillis()) +
+                ".json";
+        File file = storage.writeSharedFile(context, widgetId, fileName);
+        if (file == null) {
             Log.i(TAG, method + "; Nothing to share");
         } else {
-            String fileName = (settings.getWidgetInstanceName() + "-" + context.getText(R.string.app_name))
-                    .replaceAll("\\W+", "-") +
-                    "-shareEvents-" + formatLogDateTime(System.currentTimeMillis()) +
-                    ".json";
+            Uri uri = FileProvider.getUriForFile(context, context.getPackageName() + FILE_PROVIDER_SUFFIX, file);
             Intent intent = new Intent(Intent.ACTION_SEND);
             intent.setType("application/json");
             intent.putExtra(Intent.EXTRA_SUBJECT, fileName);
-            intent.putExtra(Intent.EXTRA_TEXT, results);
+            intent.putExtra(Intent.EXTRA_STREAM, uri);
+            intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
             context.startActivity(
                     Intent.createChooser(intent, context.getText(R.string.share_events_for_debugging_title)));
-            Log.i(TAG, method + "; Shared " + results);
+            Log.i(TAG, method + "; Shared " + file.length() + " bytes as " + uri);
+        }
+    }
+
+    /** Streams results to a new file in the cache directory. Previously shared files are deleted,
+     * when they are older than {@link #SHARED_FILES_RETENTION_MILLIS}, so a receiver of a recent share
+     * may still read its file
+     * @return null if failed */
+    private File writeSharedFile(Context context, int widgetId, String fileName) {
+        File dir = new File(context.getCacheDir(), SHARED_DIR);
+        long deleteBefore = System.currentTimeMillis() - SHARED_FILES_RETENTION_MILLIS;
+        File[] oldFiles = dir.listFiles(oldFile -> oldFile.lastModified() < deleteBefore);
+        if (oldFiles != null) {
+            for (File oldFile : oldFiles) {
+                if (!oldFile.delete()) Log.w(TAG, "Failed to delete " + oldFile);
+            }
+        }
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Failed to create " + dir);
+            return null;
+        }
+        File file = new File(dir, fileName);
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+            writer.setIndent("  ");
+            writeJson(context, widgetId, true, writer);
+            return file;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write " + file, e);
+            return null;
         }
     }
 
@@ -105,9 +153,42 @@ public class QueryResultsStorage {
     }
 
     public List<QueryResult> getResults() {
+        return loaded();
+    }
+
+    /** Loads all results, if they were not loaded yet */
+    private List<QueryResult> loaded() {
+        if (snapshotFile != null) {
+            synchronized (this) {
+                SnapshotFile file = snapshotFile;
+                if (file != null) {
+                    for (QueryResult result : file.readAll()) {
+                        executedAt.compareAndSet(null, result.getExecutedAt());
+                        results.add(result);
+                    }
+                    snapshotFile = null;
+                }
+            }
+        }
         return results;
     }
 
+    public boolean isEmpty() {
+        SnapshotFile file = snapshotFile;
+        return file == null ? results.isEmpty() : file.size() == 0;
+    }
+
+    /** @return true if results were not changed since they were read from this file */
+    public boolean isStoredIn(File file) {
+        return getStoredFile().map(file::equals).orElse(false);
+    }
+
+    /** @return the file, from which results were read, if they were not changed since then */
+    public Optional<File> getStoredFile() {
+        SnapshotFile snapshot = snapshotFile;
+        return snapshot == null ? Optional.empty() : Optional.of(snapshot.file);
+    }
+
     public void addResults(QueryResultsStorage newResults) {
         for (QueryResult result : newResults.getResults()) {
             addResult(result);
@@ -116,17 +197,21 @@ public class QueryResultsStorage {
     }
 
     public void addResult(QueryResult result) {
+        loaded();
         executedAt.compareAndSet(null, result.getExecutedAt());
         results.add(result);
     }
 
     public List<QueryResult> getResults(EventProviderType type, int widgetId) {
-        return results.stream().filter(result -> type == EventProviderType.EMPTY || result.providerType == type)
+        return loaded().stream().filter(result -> type == EventProviderType.EMPTY || result.providerType == type)
                 .filter(result -> widgetId == 0 || result.getWidgetId() == widgetId)
                 .collect(Collectors.toList());
     }
 
     public Optional<QueryResult> findLast(EventProviderType type) {
+        SnapshotFile file = snapshotFile;
+        if (file != null) return file.findLast(type);
+
         for (int index = results.size() - 1; index >=0; index--) {
             QueryResult result = results.get(index);
             if (type != EventProviderType.EMPTY && result.providerType != type) continue;
@@ -137,6 +222,9 @@ public class QueryResultsStorage {
     }
 
     public Optional<QueryResult> getResult(EventProviderType type, int index) {
+        SnapshotFile file = snapshotFile;
+        if (file != null) return file.getResult(type, index);
+
         int foundIndex = -1;
         for (QueryResult result: results) {
             if (type != EventProviderType.EMPTY && result.providerType != type) continue;
@@ -147,31 +235,78 @@ public class QueryResultsStorage {
         return Optional.empty();
     }
 
-    private String toJsonString(Context context, int widgetId) {
-        try {
-            return toJson(context, widgetId, true).toString(2);
-        } catch (JSONException e) {
-            return "Error while formatting data " + e;
+    /** The same as {@link #toJson(Context, int, boolean)}, but results are streamed one by one */
+    public void writeJson(Context context, int widgetId, boolean withSettings, JsonWriter writer) throws IOException {
+        writer.beginObject();
+        JsonStreams.writeMembers(writer, newWidgetData(context, widgetId, withSettings).toJson());
+        writer.name(KEY_RESULTS_VERSION).value(RESULTS_VERSION);
+        writer.name(KEY_RESULTS);
+        writer.beginArray();
+        for (QueryResult result : loaded()) {
+            if (result.getWidgetId() == widgetId) {
+                result.writeJson(writer);
+            }
         }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    private static WidgetData newWidgetData(Context context, int widgetId, boolean withSettings) {
+        return context == null || widgetId == 0
+            ? WidgetData.EMPTY
+            : WidgetData.fromSettings(context, withSettings ? AllSettings.instanceFromId(context, widgetId) : null);
     }
 
     public JSONObject toJson(Context context, int widgetId, boolean withSettings) throws JSONException {
         JSONArray resultsArray = new JSONArray();
-        for (QueryResult result : results) {
+        for (QueryResult result : loaded()) {
             if (result.getWidgetId() == widgetId) {
                 resultsArray.put(result.toJson());
             }
         }
-        WidgetData widgetData = context == null || widgetId == 0
-            ? WidgetData.EMPTY
-            : WidgetData.fromSettings(context, withSettings ? AllSettings.instanceFromId(context, widgetId) : null);
-
-        JSONObject json = widgetData.toJson();
+        JSONObject json = newWidgetData(context, widgetId, withSettings).toJson();
         json.put(KEY_RESULTS_VERSION, RESULTS_VERSION);
         json.put(KEY_RESULTS, resultsArray);
         return json;
     }
 
+    /** Results of the widget in a compact binary form, see {@link BinaryResults} */
+    public byte[] toBytes(int widgetId) throws IOException {
+        List<QueryResult> widgetResults = getResults(EventProviderType.EMPTY, widgetId);
+        BinaryResults.Writer writer = new BinaryResults.Writer();
+        writer.writeVarLong(widgetResults.size());
+        for (QueryResult result : widgetResults) {
+            BinaryResults.Writer segment = BinaryResults.Writer.segment();
+            result.writeTo(segment);
+            writer.writeVarLong(result.providerType.id);
+            writer.writeBytes(segment.toByteArray());
+        }
+        return writer.toByteArray();
+    }
+
+    /** Results are read from the file lazily, see {@link SnapshotFile} */
+    public static QueryResultsStorage fromFile(int widgetId, File file) {
+        QueryResultsStorage resultsStorage = new QueryResultsStorage();
+        resultsStorage.snapshotFile = SnapshotFile.open(file, widgetId).orElse(null);
+        return resultsStorage;
+    }
+
+    public static QueryResultsStorage fromBytes(int widgetId, byte[] bytes) {
+        QueryResultsStorage resultsStorage = new QueryResultsStorage();
+        try {
+            BinaryResults.Reader reader = new BinaryResults.Reader(bytes);
+            int size = reader.readVarInt();
+            for (int ind = 0; ind < size; ind++) {
+                reader.readVarInt(); // Provider type is used by the SnapshotFile only
+                resultsStorage.addResult(QueryResult.readFrom(BinaryResults.Reader.segment(reader.readBytes()),
+                        widgetId));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Error reading binary results", e);
+        }
+        return resultsStorage;
+    }
+
     public static QueryResultsStorage fromJson(int widgetId, JSONObject jsonStorage) {
         QueryResultsStorage resultsStorage = new QueryResultsStorage();
         if (jsonStorage.has(KEY_RESULTS)) {
@@ -187,18 +322,32 @@ public class QueryResultsStorage {
         return resultsStorage;
     }
 
+    /** A check, which doesn't load results: the same instance, or both are not changed since they were read
+     * from the same file, and they were executed at the same time */
+    public static boolean areSame(@Nullable QueryResultsStorage storage1, @Nullable QueryResultsStorage storage2) {
+        if (storage1 == storage2) return true;
+        if (storage1 == null || storage2 == null) return false;
+
+        SnapshotFile file1 = storage1.snapshotFile;
+        SnapshotFile file2 = storage2.snapshotFile;
+        return file1 != null && file2 != null && file1.file.equals(file2.file)
+                && Objects.equals(storage1.executedAt.get(), storage2.executedAt.get());
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        QueryResultsStorage results = (QueryResultsStorage) o;
+        QueryResultsStorage that = (QueryResultsStorage) o;
+        List<QueryResult> results = loaded();
+        List<QueryResult> thatResults = that.loaded();
 
-        if (this.results.size() != results.results.size()) {
+        if (results.size() != thatResults.size()) {
             return false;
         }
-        for (int ind = 0; ind < this.results.size(); ind++) {
-            if (!this.results.get(ind).equals(results.results.get(ind))) {
+        for (int ind = 0; ind < results.size(); ind++) {
+            if (!results.get(ind).equals(thatResults.get(ind))) {
                 return false;
             }
         }
@@ -207,6 +356,7 @@ public class QueryResultsStorage {
 
     @Override
     public int hashCode() {
+        List<QueryResult> results = loaded();
         int result = 0;
         for (int ind = 0; ind < results.size(); ind++) {
             result = 31 * result + results.get(ind).hashCode();
@@ -216,10 +366,12 @@ public class QueryResultsStorage {
 
     @Override
     public String toString() {
-        return TAG + ":" + results;
+        SnapshotFile file = snapshotFile;
+        return TAG + ":" + (file == null ? results : file.size() + " results in " + file.file);
     }
 
     public void clear() {
+        snapshotFile = null;
         results.clear();
         executedAt.set(null);
     }
@@ -229,6 +381,11 @@ public class QueryResultsStorage {
     }
 
     public DateTime getExecutedAt() {
+        SnapshotFile file = snapshotFile;
+        if (executedAt.get() == null && file != null) {
+            file.getResult(EventProviderType.EMPTY, 0)
+                    .ifPresent(result -> executedAt.compareAndSet(null, result.getExecutedAt()));
+        }
         return executedAt.get();
     }
 }
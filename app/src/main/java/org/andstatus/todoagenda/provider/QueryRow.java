@@ -6,6 +6,7 @@ import android.provider.CalendarContract;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -123,6 +124,57 @@ public class QueryRow {
             json.put(KEY_VALUE, value);
             return json;
         }
+
+        private static final int VALUE_NULL = 0;
+        private static final int VALUE_LONG = 1;
+        private static final int VALUE_DOUBLE = 2;
+        private static final int VALUE_STRING = 3;
+        private static final int VALUE_BLOB = 4;
+        private static final int VALUE_BOOLEAN = 5;
+
+        void writeTo(BinaryResults.Writer writer) throws IOException {
+            writer.writeVarLong(type.code);
+            if (value == null) {
+                writer.writeVarLong(VALUE_NULL);
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                    || value instanceof Byte) {
+                writer.writeVarLong(VALUE_LONG);
+                writer.writeVarLong(((Number) value).longValue());
+            } else if (value instanceof Number) {
+                writer.writeVarLong(VALUE_DOUBLE);
+                writer.out.writeDouble(((Number) value).doubleValue());
+            } else if (value instanceof byte[]) {
+                writer.writeVarLong(VALUE_BLOB);
+                writer.writeBytes((byte[]) value);
+            } else if (value instanceof Boolean) {
+                writer.writeVarLong(VALUE_BOOLEAN);
+                writer.out.writeBoolean((Boolean) value);
+            } else {
+                writer.writeVarLong(VALUE_STRING);
+                writer.writeString(value.toString());
+            }
+        }
+
+        static TypedValue readFrom(BinaryResults.Reader reader) throws IOException {
+            CursorFieldType type = CursorFieldType.fromColumnType(reader.readVarInt());
+            int valueType = reader.readVarInt();
+            switch (valueType) {
+                case VALUE_NULL:
+                    return new TypedValue(type, null);
+                case VALUE_LONG:
+                    return new TypedValue(type, reader.readVarLong());
+                case VALUE_DOUBLE:
+                    return new TypedValue(type, reader.in.readDouble());
+                case VALUE_STRING:
+                    return new TypedValue(type, reader.readString());
+                case VALUE_BLOB:
+                    return new TypedValue(type, reader.readBytes());
+                case VALUE_BOOLEAN:
+                    return new TypedValue(type, reader.in.readBoolean());
+                default:
+                    throw new IOException("Unknown value type " + valueType);
+            }
+        }
     }
 
     @Override
@@ -224,7 +276,7 @@ public class QueryRow {
         return values;
     }
 
-    private Object get(String columnName) {
+    Object get(String columnName) {
         if (mRow.containsKey(columnName)) {
             return mRow.get(columnName).value;
         }
@@ -253,6 +305,24 @@ public class QueryRow {
         return row;
     }
 
+    void writeTo(BinaryResults.Writer writer) throws IOException {
+        writer.writeVarLong(mRow.size());
+        for (Map.Entry<String, TypedValue> entry : mRow.entrySet()) {
+            writer.writeString(entry.getKey());
+            entry.getValue().writeTo(writer);
+        }
+    }
+
+    static QueryRow readFrom(BinaryResults.Reader reader) throws IOException {
+        QueryRow row = new QueryRow();
+        int size = reader.readVarInt();
+        for (int ind = 0; ind < size; ind++) {
+            String columnName = reader.readString();
+            row.mRow.put(columnName, TypedValue.readFrom(reader));
+        }
+        return row;
+    }
+
     public JSONObject toJson() throws JSONException {
         JSONObject json = new JSONObject();
         for (Map.Entry<String, TypedValue> entry : mRow.entrySet()) {
@@ -0,0 +1,126 @@
+package org.andstatus.todoagenda.provider;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Query results, stored in a file in the {@link BinaryResults} format.
+ * Only an index of segments is kept in memory, a result is read from the file, when it is requested.
+ * Read results are softly referenced, so they may be reused while there is enough memory.
+ */
+class SnapshotFile {
+    private static final String TAG = SnapshotFile.class.getSimpleName();
+
+    final File file;
+    private final long fileLength;
+    private final long lastModified;
+    private final int widgetId;
+    private final List<Segment> segments;
+
+    private static class Segment {
+        final EventProviderType providerType;
+        final long offset;
+        final int length;
+        volatile SoftReference<QueryResult> result = new SoftReference<>(null);
+
+        Segment(EventProviderType providerType, long offset, int length) {
+            this.providerType = providerType;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private SnapshotFile(File file, int widgetId, List<Segment> segments) {
+        this.file = file;
+        fileLength = file.length();
+        lastModified = file.lastModified();
+        this.widgetId = widgetId;
+        this.segments = segments;
+    }
+
+    /** Reads the index of segments only */
+    static Optional<SnapshotFile> open(File file, int widgetId) {
+        if (!file.exists()) return Optional.empty();
+
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            BinaryResults.Reader reader = new BinaryResults.Reader(stream, file.length(), true);
+            int size = reader.readVarInt();
+            List<Segment> segments = new ArrayList<>(size);
+            for (int ind = 0; ind < size; ind++) {
+                EventProviderType providerType = EventProviderType.fromId(reader.readVarInt());
+                int length = reader.skipBytes();
+                segments.add(new Segment(providerType, reader.position() - length, length));
+            }
+            return Optional.of(new SnapshotFile(file, widgetId, Collections.unmodifiableList(segments)));
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to open " + file, e);
+            return Optional.empty();
+        }
+    }
+
+    int size() {
+        return segments.size();
+    }
+
+    /** @param index of results of this type, {@link EventProviderType#EMPTY} means any type */
+    Optional<QueryResult> getResult(EventProviderType type, int index) {
+        int foundIndex = -1;
+        for (Segment segment : segments) {
+            if (type != EventProviderType.EMPTY && segment.providerType != type) continue;
+
+            foundIndex++;
+            if (foundIndex == index) return read(segment);
+        }
+        return Optional.empty();
+    }
+
+    Optional<QueryResult> findLast(EventProviderType type) {
+        for (int index = segments.size() - 1; index >= 0; index--) {
+            Segment segment = segments.get(index);
+            if (type != EventProviderType.EMPTY && segment.providerType != type) continue;
+
+            return read(segment);
+        }
+        return Optional.empty();
+    }
+
+    List<QueryResult> readAll() {
+        List<QueryResult> results = new ArrayList<>();
+        for (Segment segment : segments) {
+            read(segment).ifPresent(results::add);
+        }
+        return results;
+    }
+
+    private Optional<QueryResult> read(Segment segment) {
+        QueryResult result = segment.result.get();
+        if (result != null) return Optional.of(result);
+
+        if (file.length() != fileLength || file.lastModified() != lastModified) {
+            Log.w(TAG, "File was changed after it was opened: " + file);
+            return Optional.empty();
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            byte[] bytes = new byte[segment.length];
+            randomAccessFile.seek(segment.offset);
+            randomAccessFile.readFully(bytes);
+            result = QueryResult.readFrom(BinaryResults.Reader.segment(bytes), widgetId);
+            segment.result = new SoftReference<>(result);
+            return Optional.of(result);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read " + segment.providerType + " at " + segment.offset + " from " + file, e);
+            return Optional.empty();
+        }
+    }
+}
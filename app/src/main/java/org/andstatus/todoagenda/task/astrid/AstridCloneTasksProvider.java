@@ -14,6 +14,7 @@ import org.andstatus.todoagenda.R;
 import org.andstatus.todoagenda.prefs.EventSource;
 import org.andstatus.todoagenda.prefs.FilterMode;
 import org.andstatus.todoagenda.prefs.OrderedEventSource;
+import org.andstatus.todoagenda.provider.CursorColumns;
 import org.andstatus.todoagenda.provider.EventProviderType;
 import org.andstatus.todoagenda.task.AbstractTaskProvider;
 import org.andstatus.todoagenda.task.TaskEvent;
@@ -70,10 +71,12 @@ public class AstridCloneTasksProvider extends AbstractTaskProvider {
         myContentResolver.onQueryEvents();
 
         String where = getWhereClause();
+        CursorColumns columns = new CursorColumns(taskSource.getListColumnId(), TASKS_COLUMN_ID, TASKS_COLUMN_TITLE,
+            TASKS_COLUMN_START_DATE, TASKS_COLUMN_DUE_DATE, TASKS_COLUMN_IMPORTANCE);
 
         return myContentResolver.foldEvents(TODOAGENDA_URI, null, where, null, null,
             new ArrayList<>(), tasks -> cursor -> {
-                TaskEvent task = newTask(cursor);
+                TaskEvent task = newTask(cursor, columns.of(cursor));
                 if (matchedFilter(task)) {
                     tasks.add(task);
                 }
@@ -114,20 +117,28 @@ public class AstridCloneTasksProvider extends AbstractTaskProvider {
         return whereBuilder.toString();
     }
 
-    private TaskEvent newTask(Cursor cursor) {
+    // Positions of columns in the CursorColumns of tasks
+    private static final int COLUMN_LIST_ID = 0;
+    private static final int COLUMN_ID = 1;
+    private static final int COLUMN_TITLE = 2;
+    private static final int COLUMN_START_DATE = 3;
+    private static final int COLUMN_DUE_DATE = 4;
+    private static final int COLUMN_IMPORTANCE = 5;
+
+    private TaskEvent newTask(Cursor cursor, CursorColumns columns) {
         OrderedEventSource source = getSettings().getActiveEventSource(
-            type, cursor.getInt(cursor.getColumnIndex(taskSource.getListColumnId())));
+            type, columns.getInt(cursor, COLUMN_LIST_ID));
         TaskEvent task = new TaskEvent(getSettings(), getSettings().clock().getZone());
         task.setEventSource(source);
-        task.setId(cursor.getLong(cursor.getColumnIndex(TASKS_COLUMN_ID)));
-        task.setTitle(cursor.getString(cursor.getColumnIndex(TASKS_COLUMN_TITLE)));
+        task.setId(columns.getLong(cursor, COLUMN_ID));
+        task.setTitle(columns.getString(cursor, COLUMN_TITLE));
 
-        Long startMillis = getPositiveLongOrNull(cursor, TASKS_COLUMN_START_DATE);
-        Long dueMillisRaw = getPositiveLongOrNull(cursor, TASKS_COLUMN_DUE_DATE);
+        Long startMillis = columns.getPositiveLongOrNull(cursor, COLUMN_START_DATE);
+        Long dueMillisRaw = columns.getPositiveLongOrNull(cursor, COLUMN_DUE_DATE);
         task.setAllDay(taskSource.isAllDay(dueMillisRaw));
         Long dueMillis = taskSource.toDueMillis(dueMillisRaw, getSettings().clock().getZone());
         task.setDates(startMillis, dueMillis);
-        int priority = cursor.getInt(cursor.getColumnIndex(TASKS_COLUMN_IMPORTANCE));
+        int priority = columns.getInt(cursor, COLUMN_IMPORTANCE);
         int color = context.getColor(priorityToColor(priority));
         task.setColor(getAsOpaque(color));
 
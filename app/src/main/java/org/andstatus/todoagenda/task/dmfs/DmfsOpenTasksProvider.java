@@ -9,6 +9,7 @@ import android.text.TextUtils;
 import org.andstatus.todoagenda.prefs.EventSource;
 import org.andstatus.todoagenda.prefs.FilterMode;
 import org.andstatus.todoagenda.prefs.OrderedEventSource;
+import org.andstatus.todoagenda.provider.CursorColumns;
 import org.andstatus.todoagenda.provider.EventProviderType;
 import org.andstatus.todoagenda.task.AbstractTaskProvider;
 import org.andstatus.todoagenda.task.TaskEvent;
@@ -28,6 +29,26 @@ public class DmfsOpenTasksProvider extends AbstractTaskProvider {
     private static final Intent ADD_TASK_INTENT = IntentUtil.newIntent(Intent.ACTION_INSERT)
             .setDataAndType(PROVIDER_URI, "vnd.android.cursor.dir/org.dmfs.tasks.tasks");
 
+    private static final String[] TASKS_PROJECTION = {
+            DmfsOpenTasksContract.Tasks.COLUMN_LIST_ID,
+            DmfsOpenTasksContract.Tasks.COLUMN_ID,
+            DmfsOpenTasksContract.Tasks.COLUMN_TITLE,
+            DmfsOpenTasksContract.Tasks.COLUMN_DUE_DATE,
+            DmfsOpenTasksContract.Tasks.COLUMN_START_DATE,
+            DmfsOpenTasksContract.Tasks.COLUMN_IS_ALLDAY,
+            DmfsOpenTasksContract.Tasks.COLUMN_COLOR,
+            DmfsOpenTasksContract.Tasks.COLUMN_STATUS,
+    };
+    // Positions of columns in the TASKS_PROJECTION
+    private static final int COLUMN_LIST_ID = 0;
+    private static final int COLUMN_ID = 1;
+    private static final int COLUMN_TITLE = 2;
+    private static final int COLUMN_DUE_DATE = 3;
+    private static final int COLUMN_START_DATE = 4;
+    private static final int COLUMN_IS_ALLDAY = 5;
+    private static final int COLUMN_COLOR = 6;
+    private static final int COLUMN_STATUS = 7;
+
     public DmfsOpenTasksProvider(EventProviderType type, Context context, int widgetId) {
         super(type, context, widgetId);
     }
@@ -36,21 +57,12 @@ public class DmfsOpenTasksProvider extends AbstractTaskProvider {
     public List<TaskEvent> queryTasks() {
         myContentResolver.onQueryEvents();
 
-        String[] projection = {
-                DmfsOpenTasksContract.Tasks.COLUMN_LIST_ID,
-                DmfsOpenTasksContract.Tasks.COLUMN_ID,
-                DmfsOpenTasksContract.Tasks.COLUMN_TITLE,
-                DmfsOpenTasksContract.Tasks.COLUMN_DUE_DATE,
-                DmfsOpenTasksContract.Tasks.COLUMN_START_DATE,
-                DmfsOpenTasksContract.Tasks.COLUMN_IS_ALLDAY,
-                DmfsOpenTasksContract.Tasks.COLUMN_COLOR,
-                DmfsOpenTasksContract.Tasks.COLUMN_STATUS,
-        };
         String where = getWhereClause();
+        CursorColumns columns = new CursorColumns(TASKS_PROJECTION);
 
-        return myContentResolver.foldEvents(PROVIDER_URI, projection, where, null, null,
+        return myContentResolver.foldEvents(PROVIDER_URI, TASKS_PROJECTION.clone(), where, null, null,
                 new ArrayList<>(), tasks -> cursor -> {
-                    TaskEvent task = newTask(cursor);
+                    TaskEvent task = newTask(cursor, columns.of(cursor));
                     if (matchedFilter(task)) {
                         tasks.add(task);
                     }
@@ -88,32 +100,29 @@ public class DmfsOpenTasksProvider extends AbstractTaskProvider {
         return whereBuilder.toString();
     }
 
-    private TaskEvent newTask(Cursor cursor) {
+    private TaskEvent newTask(Cursor cursor, CursorColumns columns) {
         OrderedEventSource source = getSettings()
-                .getActiveEventSource(type,
-                        cursor.getInt(cursor.getColumnIndex(DmfsOpenTasksContract.Tasks.COLUMN_LIST_ID)));
+                .getActiveEventSource(type, columns.getInt(cursor, COLUMN_LIST_ID));
         TaskEvent task = new TaskEvent(getSettings(), getSettings().clock().getZone());
         task.setEventSource(source);
-        task.setId(cursor.getLong(cursor.getColumnIndex(DmfsOpenTasksContract.Tasks.COLUMN_ID)));
-        task.setTitle(cursor.getString(cursor.getColumnIndex(DmfsOpenTasksContract.Tasks.COLUMN_TITLE)));
+        task.setId(columns.getLong(cursor, COLUMN_ID));
+        task.setTitle(columns.getString(cursor, COLUMN_TITLE));
 
-        Long startMillis = getPositiveLongOrNull(cursor, DmfsOpenTasksContract.Tasks.COLUMN_START_DATE);
-        int allDayEventIdx = cursor.getColumnIndex(DmfsOpenTasksContract.Tasks.COLUMN_IS_ALLDAY);
-        task.setAllDay(!cursor.isNull(allDayEventIdx) && cursor.getInt(allDayEventIdx) != 0);
-        Long dueMillis = getPositiveLongOrNull(cursor, DmfsOpenTasksContract.Tasks.COLUMN_DUE_DATE);
+        Long startMillis = columns.getPositiveLongOrNull(cursor, COLUMN_START_DATE);
+        task.setAllDay(!columns.isNull(cursor, COLUMN_IS_ALLDAY) && columns.getInt(cursor, COLUMN_IS_ALLDAY) != 0);
+        Long dueMillis = columns.getPositiveLongOrNull(cursor, COLUMN_DUE_DATE);
         task.setDates(startMillis, dueMillis);
 
-        task.setColor(getAsOpaque(cursor.getInt(cursor.getColumnIndex(DmfsOpenTasksContract.Tasks.COLUMN_COLOR))));
-        task.setStatus(loadStatus(cursor));
+        task.setColor(getAsOpaque(columns.getInt(cursor, COLUMN_COLOR)));
+        task.setStatus(loadStatus(cursor, columns));
 
         return task;
     }
 
-    private TaskStatus loadStatus(Cursor cursor) {
-        int columnIndex = cursor.getColumnIndex(DmfsOpenTasksContract.Tasks.COLUMN_STATUS);
-        if (columnIndex < 0) return TaskStatus.UNKNOWN;
+    private TaskStatus loadStatus(Cursor cursor, CursorColumns columns) {
+        if (columns.index(COLUMN_STATUS) < 0) return TaskStatus.UNKNOWN;
 
-        switch (cursor.getInt(columnIndex)) {
+        switch (columns.getInt(cursor, COLUMN_STATUS)) {
             case 0:
                 return TaskStatus.NEEDS_ACTION;
             case 1:
@@ -12,6 +12,7 @@ import org.andstatus.todoagenda.R;
 import org.andstatus.todoagenda.prefs.EventSource;
 import org.andstatus.todoagenda.prefs.FilterMode;
 import org.andstatus.todoagenda.prefs.OrderedEventSource;
+import org.andstatus.todoagenda.provider.CursorColumns;
 import org.andstatus.todoagenda.provider.EventProviderType;
 import org.andstatus.todoagenda.task.AbstractTaskProvider;
 import org.andstatus.todoagenda.task.TaskEvent;
@@ -31,6 +32,20 @@ public class SamsungTasksProvider extends AbstractTaskProvider {
     private static final Intent ADD_TASK_INTENT = IntentUtil.newViewIntent()
             .setData(ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, 0));
 
+    private static final String[] TASKS_PROJECTION = {
+            SamsungTasksContract.Tasks.COLUMN_ID,
+            SamsungTasksContract.Tasks.COLUMN_TITLE,
+            SamsungTasksContract.Tasks.COLUMN_DUE_DATE,
+            SamsungTasksContract.Tasks.COLUMN_COLOR,
+            SamsungTasksContract.Tasks.COLUMN_LIST_ID,
+    };
+    // Positions of columns in the TASKS_PROJECTION
+    private static final int COLUMN_ID = 0;
+    private static final int COLUMN_TITLE = 1;
+    private static final int COLUMN_DUE_DATE = 2;
+    private static final int COLUMN_COLOR = 3;
+    private static final int COLUMN_LIST_ID = 4;
+
     public SamsungTasksProvider(EventProviderType type, Context context, int widgetId) {
         super(type, context, widgetId);
     }
@@ -40,18 +55,12 @@ public class SamsungTasksProvider extends AbstractTaskProvider {
         myContentResolver.onQueryEvents();
 
         Uri uri = SamsungTasksContract.Tasks.PROVIDER_URI;
-        String[] projection = {
-                SamsungTasksContract.Tasks.COLUMN_ID,
-                SamsungTasksContract.Tasks.COLUMN_TITLE,
-                SamsungTasksContract.Tasks.COLUMN_DUE_DATE,
-                SamsungTasksContract.Tasks.COLUMN_COLOR,
-                SamsungTasksContract.Tasks.COLUMN_LIST_ID,
-        };
         String where = getWhereClause();
+        CursorColumns columns = new CursorColumns(TASKS_PROJECTION);
 
-        return myContentResolver.foldEvents(uri, projection, where, null, null,
+        return myContentResolver.foldEvents(uri, TASKS_PROJECTION.clone(), where, null, null,
                 new ArrayList<>(), tasks -> cursor -> {
-                    TaskEvent task = newTask(cursor);
+                    TaskEvent task = newTask(cursor, columns.of(cursor));
                     if (matchedFilter(task)) {
                         tasks.add(task);
                     }
@@ -82,20 +91,18 @@ public class SamsungTasksProvider extends AbstractTaskProvider {
         return whereBuilder.toString();
     }
 
-    private TaskEvent newTask(Cursor cursor) {
-        OrderedEventSource source = getSettings()
-                .getActiveEventSource(type,
-                        cursor.getInt(cursor.getColumnIndex(SamsungTasksContract.Tasks.COLUMN_LIST_ID)));
+    private TaskEvent newTask(Cursor cursor, CursorColumns columns) {
+        int listId = columns.getInt(cursor, COLUMN_LIST_ID);
+        OrderedEventSource source = getSettings().getActiveEventSource(type, listId);
         TaskEvent task = new TaskEvent(getSettings(), getSettings().clock().getZone());
         task.setEventSource(source);
-        task.setId(cursor.getLong(cursor.getColumnIndex(SamsungTasksContract.Tasks.COLUMN_ID)));
-        task.setTitle(cursor.getString(cursor.getColumnIndex(SamsungTasksContract.Tasks.COLUMN_TITLE)));
+        task.setId(columns.getLong(cursor, COLUMN_ID));
+        task.setTitle(columns.getString(cursor, COLUMN_TITLE));
 
-        Long dueMillis = getPositiveLongOrNull(cursor, SamsungTasksContract.Tasks.COLUMN_DUE_DATE);
+        Long dueMillis = columns.getPositiveLongOrNull(cursor, COLUMN_DUE_DATE);
         task.setDates(null, dueMillis);
 
-        task.setColor(getColor(cursor, cursor.getColumnIndex(SamsungTasksContract.Tasks.COLUMN_COLOR),
-                cursor.getInt(cursor.getColumnIndex(SamsungTasksContract.Tasks.COLUMN_LIST_ID))));
+        task.setColor(getColor(cursor, columns.index(COLUMN_COLOR), listId));
 
         return task;
     }
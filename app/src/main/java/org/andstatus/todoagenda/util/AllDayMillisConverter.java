@@ -0,0 +1,81 @@
+package org.andstatus.todoagenda.util;
+
+import android.util.Log;
+
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts dates of all day events, which are stored as millis of midnight in UTC,
+ * to the start of the same date in a time zone.
+ * If midnight is in a time gap, the first hour after the gap is taken.
+ * Results are memoized by the day and the zone, so a gap is resolved once for each transition.
+ */
+public class AllDayMillisConverter {
+    private static final String TAG = AllDayMillisConverter.class.getSimpleName();
+    private static final int CACHE_SIZE = 1024;
+    private static final Map<DateTimeZone, AllDayMillisConverter> converters = new ConcurrentHashMap<>();
+
+    private final DateTimeZone zone;
+    /** Direct-mapped cache by the UTC day. Entries are immutable, so they may be read without locks */
+    private final Day[] days = new Day[CACHE_SIZE];
+
+    private static class Day {
+        final long utcDay;
+        final long startMillis;
+
+        Day(long utcDay, long startMillis) {
+            this.utcDay = utcDay;
+            this.startMillis = startMillis;
+        }
+    }
+
+    private AllDayMillisConverter(DateTimeZone zone) {
+        this.zone = zone;
+    }
+
+    public static AllDayMillisConverter forZone(DateTimeZone zone) {
+        AllDayMillisConverter converter = converters.get(zone);
+        return converter == null
+                ? converters.computeIfAbsent(zone, AllDayMillisConverter::new)
+                : converter;
+    }
+
+    /** @return epoch millis of the start of the date in the zone */
+    public long toStartOfDay(long allDayMillis) {
+        long utcDay = Math.floorDiv(allDayMillis, DateTimeConstants.MILLIS_PER_DAY);
+        int slot = (int) (utcDay & (CACHE_SIZE - 1));
+        Day day = days[slot];
+        if (day != null && day.utcDay == utcDay) return day.startMillis;
+
+        day = new Day(utcDay, calcStartOfDay(utcDay));
+        days[slot] = day;
+        return day.startMillis;
+    }
+
+    private long calcStartOfDay(long utcDay) {
+        long localMidnight = utcDay * DateTimeConstants.MILLIS_PER_DAY;
+        for (int hour = 0; hour < DateTimeConstants.HOURS_PER_DAY; hour++) {
+            long localMillis = localMidnight + hour * (long) DateTimeConstants.MILLIS_PER_HOUR;
+            int offset = zone.getOffsetFromLocal(localMillis);
+            long millis = localMillis - offset;
+            if (zone.getOffset(millis) == offset) {
+                if (hour > 0) {
+                    Log.v(TAG, "Local Date Time Gap at midnight, utcDay=" + utcDay + ", zone=" + zone +
+                            "; start at " + hour + " h");
+                }
+                return millis;
+            }
+        }
+        // The whole day was skipped
+        return MyClock.startOfDayMillis(utcDay, zone);
+    }
+
+    /** @return millis of midnight in UTC of the date of the millis in the zone */
+    public static long toAllDayMillis(long millis, DateTimeZone zone) {
+        return MyClock.toEpochDay(millis, zone) * DateTimeConstants.MILLIS_PER_DAY;
+    }
+}
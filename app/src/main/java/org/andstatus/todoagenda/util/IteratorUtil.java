@@ -0,0 +1,84 @@
+package org.andstatus.todoagenda.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Lazy operators over iterators, so that stages of a pipeline don't need intermediate collections.
+ * Each item passes all stages before the next item is taken from the source.
+ */
+public class IteratorUtil {
+
+    private IteratorUtil() {
+        // Empty
+    }
+
+    /** Items, for which the predicate is true. The predicate may be stateful, it is tested once per item */
+    public static <T> Iterator<T> filter(Iterator<T> iterator, Predicate<? super T> predicate) {
+        return new Iterator<T>() {
+            private T nextItem = null;
+            private boolean hasNextItem = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!hasNextItem && iterator.hasNext()) {
+                    T item = iterator.next();
+                    if (predicate.test(item)) {
+                        nextItem = item;
+                        hasNextItem = true;
+                    }
+                }
+                return hasNextItem;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+
+                T item = nextItem;
+                nextItem = null;
+                hasNextItem = false;
+                return item;
+            }
+        };
+    }
+
+    /** Replaces each item with zero or more items. An iterator, returned by the mapper,
+     * is fully consumed before the mapper is applied to the next item, so the mapper may reuse its buffer */
+    public static <T, R> Iterator<R> flatMap(Iterator<T> iterator,
+                                             Function<? super T, ? extends Iterator<? extends R>> mapper) {
+        return new Iterator<R>() {
+            private Iterator<? extends R> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (!iterator.hasNext()) return false;
+
+                    current = mapper.apply(iterator.next());
+                }
+                return true;
+            }
+
+            @Override
+            public R next() {
+                if (!hasNext()) throw new NoSuchElementException();
+
+                return current.next();
+            }
+        };
+    }
+
+    public static <T> List<T> toList(Iterator<? extends T> iterator) {
+        List<T> list = new ArrayList<>();
+        while (iterator.hasNext()) {
+            list.add(iterator.next());
+        }
+        return list;
+    }
+}
@@ -5,9 +5,12 @@ import androidx.annotation.Nullable;
 import org.andstatus.todoagenda.prefs.InstanceSettings;
 import org.andstatus.todoagenda.prefs.SnapshotMode;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
 import org.joda.time.DateTimeZone;
-import org.joda.time.Days;
-import org.joda.time.Minutes;
+import org.joda.time.chrono.ISOChronology;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
 
 /**
  * A clock, the can be changed independently from a Device clock
@@ -22,6 +25,51 @@ public class MyClock {
     private volatile DateTime snapshotDateSetAt = null;
     private volatile String lockedTimeZoneId = "";
     private volatile DateTimeZone zone;
+    /** Snapshot of a reload, which runs in the current thread */
+    private final ThreadLocal<Frozen> frozen = new ThreadLocal<>();
+
+    /** "Now" and boundaries of days around it in the zone of the clock, fixed during a reload of a widget */
+    private static class Frozen {
+        private static final int DAYS_BEFORE = 7;
+        private static final int DAYS_AFTER = 42;
+
+        final long nowMillis;
+        final DateTimeZone zone;
+        final long todayEpochDay;
+        final long startOfToday;
+        final long startOfTomorrow;
+        /** Starts of days from {@link #DAYS_BEFORE} days before today till {@link #DAYS_AFTER} days after it */
+        final long[] dayStarts = new long[DAYS_BEFORE + 1 + DAYS_AFTER + 1];
+        /** Number of not finished {@link #freeze()} calls in a thread */
+        int count = 0;
+
+        Frozen(long nowMillis, DateTimeZone zone) {
+            this.nowMillis = nowMillis;
+            this.zone = zone;
+            todayEpochDay = toEpochDay(nowMillis, zone);
+            for (int ind = 0; ind < dayStarts.length; ind++) {
+                dayStarts[ind] = startOfDayMillis(todayEpochDay - DAYS_BEFORE + ind, zone);
+            }
+            startOfToday = dayStarts[DAYS_BEFORE];
+            startOfTomorrow = dayStarts[DAYS_BEFORE + 1];
+        }
+
+        /** @return null if the day is out of the table */
+        Long epochDayOf(long millis) {
+            if (millis < dayStarts[0] || millis >= dayStarts[dayStarts.length - 1]) return null;
+
+            int found = Arrays.binarySearch(dayStarts, millis);
+            int ind = found >= 0 ? found : -found - 2;
+            return todayEpochDay - DAYS_BEFORE + ind;
+        }
+
+        long startOfDay(long epochDay) {
+            long ind = epochDay - todayEpochDay + DAYS_BEFORE;
+            return ind >= 0 && ind < dayStarts.length
+                    ? dayStarts[(int) ind]
+                    : startOfDayMillis(epochDay, zone);
+        }
+    }
 
     public MyClock() {
         zone = DateTimeZone.getDefault();
@@ -57,6 +105,46 @@ public class MyClock {
         }
     }
 
+    /** Till {@link #unfreeze()}, "now" and the zone don't change in the current thread,
+     * and checks of days are comparisons with precomputed values.
+     * Calls may be nested. Other threads, e.g. other reloads, have their own snapshots */
+    public void freeze() {
+        Frozen snapshot = frozen.get();
+        if (snapshot == null) {
+            DateTimeZone zone = this.zone;
+            snapshot = new Frozen(currentTime(zone).getMillis(), zone);
+            frozen.set(snapshot);
+        }
+        snapshot.count++;
+    }
+
+    public void unfreeze() {
+        Frozen snapshot = frozen.get();
+        if (snapshot != null && --snapshot.count == 0) {
+            frozen.remove();
+        }
+    }
+
+    /** @return the callable, which runs with the snapshot of the current thread, if the clock is frozen */
+    public <V> Callable<V> withFrozen(Callable<V> callable) {
+        Frozen snapshot = frozen.get();
+        if (snapshot == null) return callable;
+
+        return () -> {
+            Frozen previous = frozen.get();
+            frozen.set(snapshot);
+            try {
+                return callable.call();
+            } finally {
+                if (previous == null) {
+                    frozen.remove();
+                } else {
+                    frozen.set(previous);
+                }
+            }
+        };
+    }
+
     public String getLockedTimeZoneId() {
         return lockedTimeZoneId;
     }
@@ -69,10 +157,17 @@ public class MyClock {
      * Usually returns real "now", but may be #setNow to some other time for testing purposes
      */
     public DateTime now() {
-        return now(zone);
+        return now(getZone());
     }
 
     public DateTime now(DateTimeZone zone) {
+        Frozen frozen = this.frozen.get();
+        return frozen == null
+                ? currentTime(zone)
+                : new DateTime(frozen.nowMillis, zone);
+    }
+
+    private DateTime currentTime(DateTimeZone zone) {
         DateTime snapshotDate = this.snapshotDate;
         if (getSnapshotMode() == SnapshotMode.SNAPSHOT_TIME && snapshotDate != null) {
             return PermissionsUtil.isTestMode()
@@ -104,39 +199,99 @@ public class MyClock {
     }
 
     public DateTimeZone getZone() {
-        return zone;
+        Frozen frozen = this.frozen.get();
+        return frozen == null
+                ? zone
+                : frozen.zone;
+    }
+
+    public long nowMillis() {
+        Frozen frozen = this.frozen.get();
+        return frozen == null
+                ? currentTime(zone).getMillis()
+                : frozen.nowMillis;
+    }
+
+    /** Number of today since 1970-01-01 in the time zone */
+    public long todayEpochDay(DateTimeZone zone) {
+        Frozen frozen = this.frozen.get();
+        return frozen != null && frozen.zone.equals(zone)
+                ? frozen.todayEpochDay
+                : toEpochDay(nowMillis(), zone);
+    }
+
+    /** Number of the day since 1970-01-01 in the time zone, taken from the table of days, if the clock is frozen */
+    public long epochDayOf(long millis, DateTimeZone zone) {
+        Frozen frozen = this.frozen.get();
+        if (frozen != null && frozen.zone.equals(zone)) {
+            Long epochDay = frozen.epochDayOf(millis);
+            if (epochDay != null) return epochDay;
+        }
+        return toEpochDay(millis, zone);
+    }
+
+    /** Start of the day in the time zone, taken from the table of days, if the clock is frozen */
+    public long startOfDay(long epochDay, DateTimeZone zone) {
+        Frozen frozen = this.frozen.get();
+        return frozen != null && frozen.zone.equals(zone)
+                ? frozen.startOfDay(epochDay)
+                : startOfDayMillis(epochDay, zone);
     }
 
     public boolean isToday(@Nullable DateTime date) {
-        return isDateDefined(date) && !isBeforeToday(date) && date.isBefore(now(date.getZone()).plusDays(1).withTimeAtStartOfDay());
+        return date != null && isToday(date.getMillis(), date.getZone());
+    }
+
+    public boolean isToday(long millis, DateTimeZone zone) {
+        if (!isDateDefined(millis)) return false;
+
+        Frozen frozen = this.frozen.get();
+        return frozen != null && frozen.zone.equals(zone)
+                ? millis >= frozen.startOfToday && millis < frozen.startOfTomorrow
+                : toEpochDay(millis, zone) == todayEpochDay(zone);
     }
 
     public boolean isBeforeToday(@Nullable DateTime date) {
-        return isDateDefined(date) && date.isBefore(now(date.getZone()).withTimeAtStartOfDay());
+        return date != null && isBeforeToday(date.getMillis(), date.getZone());
+    }
+
+    public boolean isBeforeToday(long millis, DateTimeZone zone) {
+        if (!isDateDefined(millis)) return false;
+
+        Frozen frozen = this.frozen.get();
+        return frozen != null && frozen.zone.equals(zone)
+                ? millis < frozen.startOfToday
+                : toEpochDay(millis, zone) < todayEpochDay(zone);
     }
 
     public boolean isAfterToday(@Nullable DateTime date) {
-        return isDateDefined(date) && !date.isBefore(now(date.getZone()).withTimeAtStartOfDay().plusDays(1));
+        if (!isDateDefined(date)) return false;
+
+        Frozen frozen = this.frozen.get();
+        return frozen != null && frozen.zone.equals(date.getZone())
+                ? date.getMillis() >= frozen.startOfTomorrow
+                : toEpochDay(date.getMillis(), date.getZone()) > todayEpochDay(date.getZone());
     }
 
     public boolean isBeforeNow(@Nullable DateTime date) {
-        return isDateDefined(date) && date.isBefore(now(date.getZone()));
+        return date != null && isBeforeNow(date.getMillis());
+    }
+
+    public boolean isBeforeNow(long millis) {
+        return isDateDefined(millis) && millis < nowMillis();
     }
 
     public int getNumberOfDaysTo(DateTime date) {
-        return Days.daysBetween(
-                now(date.getZone()).withTimeAtStartOfDay(),
-                date.withTimeAtStartOfDay())
-            .getDays();
+        return (int) (epochDayOf(date.getMillis(), date.getZone()) - todayEpochDay(date.getZone()));
     }
 
     public int getNumberOfMinutesTo(DateTime date) {
-        return Minutes.minutesBetween(now(date.getZone()), date)
-                .getMinutes();
+        return (int) ((date.getMillis() - nowMillis()) / DateTimeConstants.MILLIS_PER_MINUTE);
     }
 
     public DateTime startOfTomorrow() {
-        return startOfNextDay(now(zone));
+        DateTimeZone zone = getZone();
+        return new DateTime(startOfDay(todayEpochDay(zone) + 1, zone), zone);
     }
 
     public static DateTime startOfNextDay(DateTime date) {
@@ -144,6 +299,24 @@ public class MyClock {
     }
 
     public static boolean isDateDefined(@Nullable DateTime dateTime) {
-        return dateTime != null && dateTime.isAfter(DATETIME_MIN) && dateTime.isBefore(DATETIME_MAX);
+        return dateTime != null && isDateDefined(dateTime.getMillis());
+    }
+
+    public static boolean isDateDefined(long millis) {
+        return millis > DATETIME_MIN.getMillis() && millis < DATETIME_MAX.getMillis();
+    }
+
+    /** Number of the day since 1970-01-01 in the time zone */
+    public static long toEpochDay(long millis, DateTimeZone zone) {
+        return Math.floorDiv(millis + zone.getOffset(millis), DateTimeConstants.MILLIS_PER_DAY);
+    }
+
+    /** Start of the day in the time zone, the same as {@link DateTime#withTimeAtStartOfDay()},
+     * but without creating objects */
+    public static long startOfDayMillis(long epochDay, DateTimeZone zone) {
+        long localMillis = epochDay * DateTimeConstants.MILLIS_PER_DAY + 6L * DateTimeConstants.MILLIS_PER_HOUR;
+        long instant = zone.convertLocalToUTC(localMillis, false);
+        instant = ISOChronology.getInstance(zone).dayOfMonth().roundFloor(instant);
+        return zone.adjustOffset(instant, false);
     }
 }
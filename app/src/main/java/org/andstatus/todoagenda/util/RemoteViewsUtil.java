@@ -1,7 +1,6 @@
 package org.andstatus.todoagenda.util;
 
 import android.content.Context;
-import android.content.res.Resources.NotFoundException;
 import android.graphics.Color;
 import android.util.Log;
 import android.util.TypedValue;
@@ -11,7 +10,7 @@ import androidx.annotation.AttrRes;
 import androidx.annotation.DimenRes;
 import androidx.annotation.IdRes;
 
-import org.andstatus.todoagenda.prefs.InstanceSettings;
+import org.andstatus.todoagenda.prefs.colors.ShadingContext;
 import org.andstatus.todoagenda.prefs.colors.TextColorPref;
 
 public class RemoteViewsUtil {
@@ -29,12 +28,12 @@ public class RemoteViewsUtil {
         // prohibit instantiation
     }
 
-    public static void setPadding(InstanceSettings settings, RemoteViews rv, @IdRes int viewId,
+    public static void setPadding(WidgetStyle style, RemoteViews rv, @IdRes int viewId,
           @DimenRes int leftDimenId, @DimenRes int topDimenId, @DimenRes int rightDimenId, @DimenRes int bottomDimenId) {
-        int leftPadding = getScaledValueInPixels(settings, leftDimenId);
-        int topPadding = getScaledValueInPixels(settings, topDimenId);
-        int rightPadding = getScaledValueInPixels(settings, rightDimenId);
-        int bottomPadding = getScaledValueInPixels(settings, bottomDimenId);
+        int leftPadding = style.getPixels(leftDimenId);
+        int topPadding = style.getPixels(topDimenId);
+        int rightPadding = style.getPixels(rightDimenId);
+        int bottomPadding = style.getPixels(bottomDimenId);
         rv.setViewPadding(viewId, leftPadding, topPadding, rightPadding, bottomPadding);
     }
 
@@ -46,22 +45,21 @@ public class RemoteViewsUtil {
         rv.setInt(viewId, METHOD_SET_COLOR_FILTER, color);
     }
 
-    public static void setViewWidth(InstanceSettings settings, RemoteViews rv, int viewId, int dimenId) {
-        rv.setInt(viewId, METHOD_SET_WIDTH, getScaledValueInPixels(settings, dimenId));
+    public static void setViewWidth(WidgetStyle style, RemoteViews rv, int viewId, int dimenId) {
+        rv.setInt(viewId, METHOD_SET_WIDTH, style.getPixels(dimenId));
     }
 
-    public static void setViewHeight(InstanceSettings settings, RemoteViews rv, int viewId, int dimenId) {
-        rv.setInt(viewId, METHOD_SET_HEIGHT, getScaledValueInPixels(settings, dimenId));
+    public static void setViewHeight(WidgetStyle style, RemoteViews rv, int viewId, int dimenId) {
+        rv.setInt(viewId, METHOD_SET_HEIGHT, style.getPixels(dimenId));
     }
 
-    public static void setTextSize(InstanceSettings settings, RemoteViews rv, int viewId, int dimenId) {
-        rv.setFloat(viewId, METHOD_SET_TEXT_SIZE, getScaledValueInScaledPixels(settings, dimenId));
+    public static void setTextSize(WidgetStyle style, RemoteViews rv, int viewId, int dimenId) {
+        rv.setFloat(viewId, METHOD_SET_TEXT_SIZE, style.getScaledPixels(dimenId));
     }
 
-    public static void setTextColor(InstanceSettings settings, TextColorPref textColorPref,
+    public static void setTextColor(WidgetStyle style, TextColorPref textColorPref,
                                     RemoteViews rv, int viewId, int colorAttrId) {
-        int color = settings.colors().getTextColor(textColorPref, colorAttrId);
-        rv.setTextColor(viewId, color);
+        rv.setTextColor(viewId, style.getTextColor(textColorPref, colorAttrId));
     }
 
     public static void setBackgroundColorFromAttr(Context context, RemoteViews rv, int viewId, int colorAttrId) {
@@ -72,18 +70,14 @@ public class RemoteViewsUtil {
         rv.setInt(viewId, METHOD_SET_BACKGROUND_COLOR, color);
     }
 
-    private static int getScaledValueInPixels(InstanceSettings settings, int dimenId) {
-        float resValue = getDimension(settings.getContext(), dimenId);
-        return  Math.round(resValue * settings.getTextSizeScale().scaleValue);
-    }
-
-    private static float getScaledValueInScaledPixels(InstanceSettings settings, int dimenId) {
-        float resValue = getDimension(settings.getContext(), dimenId);
-        float density = settings.getContext().getResources().getDisplayMetrics().density;
-        return resValue * settings.getTextSizeScale().scaleValue / density;
+    /** The value is cached, if the context is a {@link ShadingContext} */
+    public static int getColorValue(Context context, @AttrRes int attrId) {
+        return context instanceof ShadingContext
+                ? ((ShadingContext) context).getAttrColor(attrId, id -> resolveColorValue(context, id))
+                : resolveColorValue(context, attrId);
     }
 
-    public static int getColorValue(Context context, @AttrRes int attrId) {
+    private static int resolveColorValue(Context context, @AttrRes int attrId) {
         TypedValue outValue = new TypedValue();
         if (context.getTheme().resolveAttribute(attrId, outValue, true)) {
             int colorResourceId = outValue.resourceId;
@@ -100,28 +94,30 @@ public class RemoteViewsUtil {
         return Color.GRAY;
     }
 
-    private static float getDimension(Context context, int dimensionResourceId) {
-        try {
-            return context.getResources().getDimension(dimensionResourceId);
-        } catch (NotFoundException e) {
-            Log.w(TAG, "getDimension failed for dimension resource Id:" + dimensionResourceId);
-            return 0f;
-        }
-    }
-
     public static void setMultiline(RemoteViews rv, int viewId, boolean multiLine) {
         rv.setBoolean(viewId, METHOD_SET_SINGLE_LINE, !multiLine);
     }
 
+    /** The resource id is cached, if the context is a {@link ShadingContext} */
     public static void setImageFromAttr(Context context, RemoteViews rv, int viewId, int attrResId) {
+        int resourceId = context instanceof ShadingContext
+                ? ((ShadingContext) context).getAttrResourceId(attrResId, id -> resolveResourceId(context, id))
+                : resolveResourceId(context, attrResId);
+        if (resourceId != 0) {
+            setImage(rv, viewId, resourceId);
+        }
+    }
+
+    /** @return 0 if not found */
+    private static int resolveResourceId(Context context, int attrResId) {
         TypedValue outValue = new TypedValue();
         if (context.getTheme().resolveAttribute(attrResId, outValue, true)) {
-            setImage(rv, viewId, outValue.resourceId);
-        } else {
-            Log.w(TAG,
-            "setImageFromAttr: not found; attrResId:" + attrResId + ", resourceId:" + outValue.resourceId +
-                    ", out:" + outValue + ", context:" + context);
+            return outValue.resourceId;
         }
+        Log.w(TAG,
+        "setImageFromAttr: not found; attrResId:" + attrResId + ", resourceId:" + outValue.resourceId +
+                ", out:" + outValue + ", context:" + context);
+        return 0;
     }
 
     public static void setImage(RemoteViews rv, int viewId, int resId) {
@@ -0,0 +1,100 @@
+package org.andstatus.todoagenda.util;
+
+import android.content.res.Configuration;
+import android.content.res.Resources.NotFoundException;
+import android.util.Log;
+
+import androidx.annotation.AttrRes;
+import androidx.annotation.DimenRes;
+
+import org.andstatus.todoagenda.prefs.InstanceSettings;
+import org.andstatus.todoagenda.prefs.colors.Shading;
+import org.andstatus.todoagenda.prefs.colors.TextColorPref;
+import org.andstatus.todoagenda.prefs.colors.ThemeColors;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Style table of one widget: scaled dimensions, text colors and alpha values of icons.
+ * Each value is resolved from resources and themes once, and then it is reused by all rows,
+ * until settings of the widget or the configuration change.
+ * The style is looked up once per reload and is passed to visualizers.
+ */
+public class WidgetStyle {
+    private static final String TAG = WidgetStyle.class.getSimpleName();
+    private static final Map<Integer, WidgetStyle> styles = new ConcurrentHashMap<>();
+
+    private final InstanceSettings settings;
+    private final Configuration configuration;
+    private final ThemeColors colors;
+    private final float textSizeScale;
+    private final float density;
+    private final Map<Integer, Integer> pixels = new ConcurrentHashMap<>();
+    private final Map<Integer, Float> scaledPixels = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> textColors = new ConcurrentHashMap<>();
+    private final Map<TextColorPref, Shading> shadings = new ConcurrentHashMap<>();
+
+    private WidgetStyle(InstanceSettings settings, Configuration configuration) {
+        this.settings = settings;
+        this.configuration = new Configuration(configuration);
+        colors = settings.colors();
+        textSizeScale = settings.getTextSizeScale().scaleValue;
+        density = settings.getContext().getResources().getDisplayMetrics().density;
+    }
+
+    public static WidgetStyle of(InstanceSettings settings) {
+        Configuration configuration = settings.getContext().getResources().getConfiguration();
+        WidgetStyle style = styles.get(settings.getWidgetId());
+        if (style == null || style.settings != settings || style.configuration.diff(configuration) != 0) {
+            style = new WidgetStyle(settings, configuration);
+            styles.put(settings.getWidgetId(), style);
+        }
+        return style;
+    }
+
+    /** Called, when the widget is deleted */
+    public static void forget(int widgetId) {
+        styles.remove(widgetId);
+    }
+
+    /** Dimension, scaled by the text size scale of the widget, in pixels */
+    public int getPixels(@DimenRes int dimenId) {
+        return pixels.computeIfAbsent(dimenId, id -> Math.round(getDimension(id) * textSizeScale));
+    }
+
+    /** Dimension, scaled by the text size scale of the widget, in scaled pixels, as used for text sizes */
+    public float getScaledPixels(@DimenRes int dimenId) {
+        return scaledPixels.computeIfAbsent(dimenId, id -> getDimension(id) * textSizeScale / density);
+    }
+
+    public int getTextColor(TextColorPref textColorPref, @AttrRes int colorAttrId) {
+        long key = ((long) textColorPref.ordinal() << 32) | (colorAttrId & 0xFFFFFFFFL);
+        return textColors.computeIfAbsent(key, k -> colors.getTextColor(textColorPref, colorAttrId));
+    }
+
+    /** Alpha of action icons in the widget header */
+    public int getActionIconAlpha() {
+        return getAlpha(TextColorPref.WIDGET_HEADER, 154);
+    }
+
+    /** Alpha of indicator icons of an entry, which text has colors of this preference */
+    public int getIndicatorAlpha(TextColorPref textColorPref) {
+        return getAlpha(textColorPref, 128);
+    }
+
+    /** Icons are translucent on dark and light shadings only */
+    private int getAlpha(TextColorPref textColorPref, int shadedAlpha) {
+        Shading shading = shadings.computeIfAbsent(textColorPref, colors::getShading);
+        return shading == Shading.DARK || shading == Shading.LIGHT ? shadedAlpha : 255;
+    }
+
+    private float getDimension(@DimenRes int dimenId) {
+        try {
+            return settings.getContext().getResources().getDimension(dimenId);
+        } catch (NotFoundException e) {
+            Log.w(TAG, "getDimension failed for dimension resource Id:" + dimenId);
+            return 0f;
+        }
+    }
+}
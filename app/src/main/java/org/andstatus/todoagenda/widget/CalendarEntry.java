@@ -11,6 +11,9 @@ import org.andstatus.todoagenda.util.DateUtil;
 import org.andstatus.todoagenda.util.StringUtil;
 import org.joda.time.DateTime;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.andstatus.todoagenda.util.MyClock.isDateDefined;
 
 public class CalendarEntry extends WidgetEntry<CalendarEntry> {
@@ -62,7 +65,7 @@ public class CalendarEntry extends WidgetEntry<CalendarEntry> {
     }
 
     public boolean isStartOfMultiDayEvent() {
-        return isPartOfMultiDayEvent() && !getEvent().getStartDate().isBefore(entryDate);
+        return isPartOfMultiDayEvent() && getEvent().getStartEpochMillis() >= entryMillis;
     }
 
     public boolean isEndOfMultiDayEvent() {
@@ -70,7 +73,7 @@ public class CalendarEntry extends WidgetEntry<CalendarEntry> {
     }
 
     public boolean spansOneFullDay() {
-        return entryDate.plusDays(1).isEqual(event.getEndDate());
+        return getEntryDate().plusDays(1).getMillis() == event.getEndEpochMillis();
     }
 
     public CalendarEvent getEvent() {
@@ -91,15 +94,15 @@ public class CalendarEntry extends WidgetEntry<CalendarEntry> {
         String startStr;
         String endStr;
         String separator = SPACE_DASH_SPACE;
-        if (!isDateDefined(entryDate) || (isPartOfMultiDayEvent() && DateUtil.isMidnight(entryDate)
+        if (!isDateDefined(entryMillis) || (isPartOfMultiDayEvent() && DateUtil.isMidnight(getEntryDate())
                 && !isStartOfMultiDayEvent())) {
             startStr = ARROW;
             separator = SPACE;
         } else {
-            startStr = DateUtil.formatTime(this::getSettings, entryDate);
+            startStr = DateUtil.formatTime(this::getSettings, getEntryDate());
         }
         if (getSettings().getShowEndTime()) {
-            if (!isDateDefined(event.getEndDate()) || (isPartOfMultiDayEvent() && !isLastEntryOfEvent())) {
+            if (!isDateDefined(event.getEndEpochMillis()) || (isPartOfMultiDayEvent() && !isLastEntryOfEvent())) {
                 endStr = ARROW;
                 separator = SPACE;
             } else {
@@ -117,12 +120,27 @@ public class CalendarEntry extends WidgetEntry<CalendarEntry> {
         return startStr + separator + endStr;
     }
 
+    @Override
+    protected List<Object> getIdentity() {
+        return Arrays.asList(getSource().source.providerType, event.getEventId(), event.getStartEpochMillis(),
+                getEntryDayMillis());
+    }
+
+    @Override
+    protected List<Object> calcFingerprint() {
+        List<Object> fingerprint = super.calcFingerprint();
+        fingerprint.addAll(Arrays.asList(event.getEventId(), event.getStartEpochMillis(),
+                event.getEndEpochMillis(), event.getColor(), event.getCalendarColor(),
+                event.isAlarmActive(), event.isRecurring()));
+        return fingerprint;
+    }
+
     public Context getContext() {
         return event.getContext();
     }
 
     public InstanceSettings getSettings() {
-        return event.getSettings();
+        return settings;
     }
 
     @Override
@@ -151,14 +169,14 @@ public class CalendarEntry extends WidgetEntry<CalendarEntry> {
             return false;
         }
         CalendarEntry that = (CalendarEntry) o;
-        return event.equals(that.event) && entryDate.equals(that.entryDate);
+        return event.equals(that.event) && entryMillis == that.entryMillis;
     }
 
     @Override
     public int hashCode() {
         int result = super.hashCode();
         result += 31 * event.hashCode();
-        result += 31 * entryDate.hashCode();
+        result += 31 * Long.hashCode(entryMillis);
         return result;
     }
 }
@@ -1,6 +1,5 @@
 package org.andstatus.todoagenda.widget;
 
-import android.content.Context;
 import android.content.Intent;
 import android.view.ContextThemeWrapper;
 import android.view.View;
@@ -9,8 +8,8 @@ import android.widget.RemoteViews;
 import androidx.annotation.NonNull;
 
 import org.andstatus.todoagenda.R;
+import org.andstatus.todoagenda.prefs.InstanceSettings;
 import org.andstatus.todoagenda.prefs.colors.TextColorPref;
-import org.andstatus.todoagenda.provider.EventProvider;
 import org.andstatus.todoagenda.provider.EventProviderType;
 import org.andstatus.todoagenda.util.MyClock;
 import org.andstatus.todoagenda.util.RemoteViewsUtil;
@@ -31,8 +30,9 @@ public class DayHeaderVisualizer extends WidgetEntryVisualizer<DayHeader> {
     private final Alignment alignment;
     private final boolean horizontalLineBelowDayHeader;
 
-    public DayHeaderVisualizer(Context context, int widgetId) {
-        super(new EventProvider(EventProviderType.DAY_HEADER, context, widgetId));
+    public DayHeaderVisualizer(InstanceSettings settings) {
+        super(EventProviderType.DAY_HEADER.getEventProvider(settings.getContext(), settings.getWidgetId())
+                .bindSettings(settings));
         alignment = Alignment.valueOf(getSettings().getDayHeaderAlignment());
         horizontalLineBelowDayHeader = getSettings().getHorizontalLineBelowDayHeader();
     }
@@ -49,9 +49,9 @@ public class DayHeaderVisualizer extends WidgetEntryVisualizer<DayHeader> {
         ContextThemeWrapper themeContext = getSettings().colors().getThemeContext(textColorPref);
         setBackgroundColor(rv, R.id.event_entry, getSettings().colors().getEntryBackgroundColor(entry));
         if (getSettings().isCompactLayout()) {
-            RemoteViewsUtil.setPadding(getSettings(), rv, R.id.event_entry, R.dimen.zero, R.dimen.zero, R.dimen.zero, R.dimen.zero);
+            RemoteViewsUtil.setPadding(getStyle(), rv, R.id.event_entry, R.dimen.zero, R.dimen.zero, R.dimen.zero, R.dimen.zero);
         } else {
-            RemoteViewsUtil.setPadding(getSettings(), rv, R.id.event_entry, R.dimen.calender_padding, R.dimen.zero, R.dimen.calender_padding, R.dimen.entry_bottom_padding);
+            RemoteViewsUtil.setPadding(getStyle(), rv, R.id.event_entry, R.dimen.calender_padding, R.dimen.zero, R.dimen.calender_padding, R.dimen.entry_bottom_padding);
         }
         setDayHeaderTitle(position, entry, rv, textColorPref);
         setDayHeaderSeparator(position, rv, themeContext);
@@ -61,17 +61,17 @@ public class DayHeaderVisualizer extends WidgetEntryVisualizer<DayHeader> {
     @Override
     public Intent newViewEntryIntent(WidgetEntry eventEntry) {
         DayHeader entry = (DayHeader) eventEntry;
-        return newOpenCalendarAtDayIntent(entry.entryDate);
+        return newOpenCalendarAtDayIntent(entry.getEntryDate());
     }
 
     private void setDayHeaderTitle(int position, DayHeader entry, RemoteViews rv, TextColorPref textColorPref) {
         String dateString = getTitleString(entry).toString().toUpperCase(Locale.getDefault());
         rv.setTextViewText(R.id.day_header_title, dateString);
-        setTextSize(getSettings(), rv, R.id.day_header_title, R.dimen.day_header_title);
-        setTextColor(getSettings(), textColorPref, rv, R.id.day_header_title, R.attr.dayHeaderTitle);
+        setTextSize(getStyle(), rv, R.id.day_header_title, R.dimen.day_header_title);
+        setTextColor(getStyle(), textColorPref, rv, R.id.day_header_title, R.attr.dayHeaderTitle);
 
         if (getSettings().isCompactLayout()) {
-            setPadding(getSettings(), rv, R.id.day_header_title,
+            setPadding(getStyle(), rv, R.id.day_header_title,
                     R.dimen.zero, R.dimen.zero, R.dimen.zero, R.dimen.zero);
         } else {
             int paddingTopId = horizontalLineBelowDayHeader
@@ -80,7 +80,7 @@ public class DayHeaderVisualizer extends WidgetEntryVisualizer<DayHeader> {
             int paddingBottomId = horizontalLineBelowDayHeader
                     ? R.dimen.day_header_padding_top
                     : R.dimen.day_header_padding_bottom;
-            setPadding(getSettings(), rv, R.id.day_header_title,
+            setPadding(getStyle(), rv, R.id.day_header_title,
                     R.dimen.day_header_padding_left, paddingTopId, R.dimen.day_header_padding_right, paddingBottomId);
         }
     }
@@ -92,8 +92,8 @@ public class DayHeaderVisualizer extends WidgetEntryVisualizer<DayHeader> {
             case END_OF_LIST_HEADER:
                 return getContext().getString(R.string.end_of_list_header);
             default:
-                return MyClock.isDateDefined(entry.entryDate)
-                        ? getSettings().dayHeaderDateFormatter().formatDate(entry.entryDate)
+                return MyClock.isDateDefined(entry.getEntryDate())
+                        ? getSettings().dayHeaderDateFormatter().formatDate(entry.getEntryDate())
                         : "??? " + entry.entryPosition;
         }
     }
@@ -25,7 +25,7 @@ public class LastEntry extends WidgetEntry<LastEntry> {
     public static void addLast(InstanceSettings settings, List<WidgetEntry> widgetEntries) {
         LastEntry entry = widgetEntries.isEmpty()
             ? LastEntry.forEmptyList(settings)
-            : new LastEntry(settings, LastEntryType.LAST, widgetEntries.get(widgetEntries.size() - 1).entryDate);
+            : new LastEntry(settings, LastEntryType.LAST, widgetEntries.get(widgetEntries.size() - 1).getEntryDate());
         widgetEntries.add(entry);
     }
 
@@ -53,4 +53,11 @@ public class LastEntry extends WidgetEntry<LastEntry> {
         super(settings, LIST_FOOTER, date, true, null);
         this.type = type;
     }
+
+    @Override
+    protected List<Object> calcFingerprint() {
+        List<Object> fingerprint = super.calcFingerprint();
+        fingerprint.add(type);
+        return fingerprint;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,5 @@
 package org.andstatus.todoagenda.widget;
 
-import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 import android.widget.RemoteViews;
@@ -9,8 +8,8 @@ import androidx.annotation.NonNull;
 
 import org.andstatus.todoagenda.MainActivity;
 import org.andstatus.todoagenda.R;
+import org.andstatus.todoagenda.prefs.InstanceSettings;
 import org.andstatus.todoagenda.prefs.colors.TextColorPref;
-import org.andstatus.todoagenda.provider.EventProvider;
 import org.andstatus.todoagenda.provider.EventProviderType;
 import org.joda.time.DateTime;
 
@@ -28,8 +27,9 @@ import static org.andstatus.todoagenda.util.RemoteViewsUtil.setTextSize;
 public class LastEntryVisualizer extends WidgetEntryVisualizer<LastEntry> {
     private static final String TAG = LastEntryVisualizer.class.getSimpleName();
 
-    public LastEntryVisualizer(Context context, int widgetId) {
-        super(new EventProvider(EventProviderType.LAST_ENTRY, context, widgetId));
+    public LastEntryVisualizer(InstanceSettings settings) {
+        super(EventProviderType.LAST_ENTRY.getEventProvider(settings.getContext(), settings.getWidgetId())
+                .bindSettings(settings));
     }
 
     @Override
@@ -46,8 +46,8 @@ public class LastEntryVisualizer extends WidgetEntryVisualizer<LastEntry> {
         if (entry.type == LastEntry.LastEntryType.EMPTY && getSettings().noPastEvents()) {
             rv.setTextViewText(viewId, getContext().getText(R.string.no_upcoming_events));
         }
-        setTextSize(getSettings(), rv, viewId, R.dimen.event_entry_title);
-        setTextColor(getSettings(), TextColorPref.forTitle(entry), rv, viewId, R.attr.eventEntryTitle);
+        setTextSize(getStyle(), rv, viewId, R.dimen.event_entry_title);
+        setTextColor(getStyle(), TextColorPref.forTitle(entry), rv, viewId, R.attr.eventEntryTitle);
         setBackgroundColor(rv, viewId, getSettings().colors().getEntryBackgroundColor(entry));
         return rv;
     }
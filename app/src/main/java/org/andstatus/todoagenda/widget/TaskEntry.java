@@ -8,6 +8,9 @@ import org.andstatus.todoagenda.util.DateUtil;
 import org.andstatus.todoagenda.util.MyClock;
 import org.joda.time.DateTime;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.andstatus.todoagenda.widget.WidgetEntryPosition.END_OF_LIST;
 import static org.andstatus.todoagenda.widget.WidgetEntryPosition.ENTRY_DATE;
 import static org.andstatus.todoagenda.widget.WidgetEntryPosition.START_OF_TODAY;
@@ -116,6 +119,21 @@ public class TaskEntry extends WidgetEntry<TaskEntry> {
                 : DateUtil.formatTime(() -> settings, mainDate);
     }
 
+    @Override
+    protected List<Object> getIdentity() {
+        return Arrays.asList(getSource().source.providerType, event.getEventId(), getEntryDayMillis());
+    }
+
+    @Override
+    protected List<Object> calcFingerprint() {
+        List<Object> fingerprint = super.calcFingerprint();
+        fingerprint.addAll(Arrays.asList(event.getEventId(),
+                event.getStartDate() == null ? null : event.getStartDate().getMillis(),
+                event.getDueDate() == null ? null : event.getDueDate().getMillis(),
+                mainDate == null ? null : mainDate.getMillis(), event.getColor(), event.getStatus()));
+        return fingerprint;
+    }
+
     @Override
     public String toString() {
         return super.toString() + " TaskEntry [title='" + event.getTitle() + "', startDate=" + event.getStartDate() +
@@ -6,11 +6,13 @@ import org.andstatus.todoagenda.RemoteViewsFactory;
 import org.andstatus.todoagenda.prefs.InstanceSettings;
 import org.andstatus.todoagenda.prefs.OrderedEventSource;
 import org.andstatus.todoagenda.prefs.dateformat.DateFormatType;
-import org.andstatus.todoagenda.util.DateUtil;
 import org.andstatus.todoagenda.util.MyClock;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.andstatus.todoagenda.util.DateUtil.isSameDate;
 import static org.andstatus.todoagenda.widget.WidgetEntryPosition.DAY_HEADER;
@@ -20,29 +22,49 @@ import static org.andstatus.todoagenda.widget.WidgetEntryPosition.PAST_AND_DUE;
 
 public abstract class WidgetEntry<T extends WidgetEntry<T>> implements Comparable<WidgetEntry<T>> {
     public static final String EXTRA_WIDGET_ENTRY_ID = RemoteViewsFactory.PACKAGE + ".extra.WIDGET_ENTRY_ID";
-    private final static AtomicLong idGenerator = new AtomicLong(0);
     protected final InstanceSettings settings;
-    public final long entryId = idGenerator.incrementAndGet();
     public final WidgetEntryPosition entryPosition;
-    public final DateTime entryDate;
-    public final DateTime entryDay;
+    /** Epoch millis of the entry date */
+    public final long entryMillis;
+    /** Number of the entry day since 1970-01-01 in the time zone of the day */
+    public final long entryEpochDay;
     public final boolean allDay;
-    public final DateTime endDate;
     public final TimeSection timeSection;
+    /** Time zone of the entry date, the day of entries of today is in the time zone of the clock */
+    private final DateTimeZone zone;
+    private final DateTimeZone dayZone;
+    private final long entryDayMillis;
+    /** Nullable. The same object as in the event, so it is not created for the entry */
+    private final DateTime endDate;
+    /** Dates are created lazily for formatting only. The entry date is reused, if it wasn't changed */
+    private volatile DateTime entryDate;
+    private volatile DateTime entryDay = null;
+    private volatile Object fingerprint = null;
+    private volatile long entryId = 0;
 
     protected WidgetEntry(InstanceSettings settings, WidgetEntryPosition entryPosition, DateTime entryDate, boolean allDay, DateTime endDate) {
         this.settings = settings;
         this.entryPosition = entryPosition;
-        this.entryDate = fixEntryDate(entryPosition, entryDate);
-        entryDay = calcEntryDay(settings, entryPosition, this.entryDate);
+        DateTime date = dateOrDefault(entryPosition, entryDate);
+        zone = date.getZone();
+        entryMillis = fixEntryMillis(settings.clock(), entryPosition, date);
+        this.entryDate = entryMillis == date.getMillis() ? date : null;
+        dayZone = isOfToday(entryPosition) ? settings.clock().getZone() : zone;
+        entryEpochDay = isOfToday(entryPosition)
+                ? settings.clock().todayEpochDay(dayZone)
+                : settings.clock().epochDayOf(entryMillis, dayZone);
+        entryDayMillis = settings.clock().startOfDay(entryEpochDay, dayZone);
         this.allDay = allDay;
         this.endDate = endDate;
-        timeSection = calcTimeSection(settings, entryPosition, entryDay, endDate);
+        timeSection = calcTimeSection(settings, entryPosition, entryDayMillis, dayZone, endDate);
     }
 
-    private static DateTime fixEntryDate(WidgetEntryPosition entryPosition, DateTime entryDate) {
+    private static DateTime dateOrDefault(WidgetEntryPosition entryPosition, DateTime entryDate) {
         switch (entryPosition) {
             case ENTRY_DATE:
+            case DAY_HEADER:
+            case START_OF_DAY:
+            case END_OF_DAY:
                 throwIfNull(entryPosition, entryDate);
                 return entryDate;
             case PAST_AND_DUE_HEADER:
@@ -52,13 +74,6 @@ public abstract class WidgetEntry<T extends WidgetEntry<T>> implements Comparabl
                 return entryDate == null
                         ? MyClock.DATETIME_MIN
                         : entryDate;
-            case DAY_HEADER:
-            case START_OF_DAY:
-                throwIfNull(entryPosition, entryDate);
-                return entryDate.withTimeAtStartOfDay();
-            case END_OF_DAY:
-                throwIfNull(entryPosition, entryDate);
-                return entryDate.withTimeAtStartOfDay().plusDays(1).minusMillis(1);
             case END_OF_TODAY:
             case END_OF_LIST_HEADER:
             case END_OF_LIST:
@@ -71,18 +86,24 @@ public abstract class WidgetEntry<T extends WidgetEntry<T>> implements Comparabl
         }
     }
 
-    private static DateTime calcEntryDay(InstanceSettings settings, WidgetEntryPosition entryPosition, DateTime entryDate) {
+    private static long fixEntryMillis(MyClock clock, WidgetEntryPosition entryPosition, DateTime date) {
         switch (entryPosition) {
-            case START_OF_TODAY:
-            case END_OF_TODAY:
-                return settings.clock().now().withTimeAtStartOfDay();
+            case DAY_HEADER:
+            case START_OF_DAY:
+                return clock.startOfDay(clock.epochDayOf(date.getMillis(), date.getZone()), date.getZone());
+            case END_OF_DAY:
+                return clock.startOfDay(clock.epochDayOf(date.getMillis(), date.getZone()) + 1, date.getZone()) - 1;
             default:
-                return entryDate.withTimeAtStartOfDay();
+                return date.getMillis();
         }
     }
 
+    private static boolean isOfToday(WidgetEntryPosition entryPosition) {
+        return entryPosition == WidgetEntryPosition.START_OF_TODAY || entryPosition == WidgetEntryPosition.END_OF_TODAY;
+    }
+
     private static TimeSection calcTimeSection(InstanceSettings settings, WidgetEntryPosition entryPosition,
-                                               DateTime entryDay, DateTime endDate) {
+                                               long entryDayMillis, DateTimeZone dayZone, DateTime endDate) {
         switch (entryPosition) {
             case PAST_AND_DUE_HEADER:
                 return TimeSection.PAST;
@@ -96,7 +117,7 @@ public abstract class WidgetEntry<T extends WidgetEntry<T>> implements Comparabl
             default:
                 break;
         }
-        if (settings.clock().isToday(entryDay)) {
+        if (settings.clock().isToday(entryDayMillis, dayZone)) {
             if (entryPosition == DAY_HEADER) return TimeSection.TODAY;
 
             if (settings.clock().isToday(endDate)) {
@@ -106,7 +127,7 @@ public abstract class WidgetEntry<T extends WidgetEntry<T>> implements Comparabl
             }
             return TimeSection.TODAY;
         }
-        return settings.clock().isBeforeToday(entryDay)
+        return settings.clock().isBeforeToday(entryDayMillis, dayZone)
                 ? TimeSection.PAST
                 : (settings.clock().isToday(endDate) ? TimeSection.TODAY : TimeSection.FUTURE);
     }
@@ -118,9 +139,38 @@ public abstract class WidgetEntry<T extends WidgetEntry<T>> implements Comparabl
     }
 
     public boolean isLastEntryOfEvent() {
+        MyClock clock = settings.clock();
         return endDate == null ||
                 !entryPosition.entryDateIsRequired ||
-                endDate.isBefore(MyClock.startOfNextDay(this.entryDate));
+                endDate.getMillis() < clock.startOfDay(clock.epochDayOf(entryMillis, zone) + 1, zone);
+    }
+
+    public DateTime getEntryDate() {
+        DateTime date = entryDate;
+        if (date == null) {
+            date = new DateTime(entryMillis, zone);
+            entryDate = date;
+        }
+        return date;
+    }
+
+    /** Start of the entry day */
+    public DateTime getEntryDay() {
+        DateTime day = entryDay;
+        if (day == null) {
+            day = new DateTime(entryDayMillis, dayZone);
+            entryDay = day;
+        }
+        return day;
+    }
+
+    public long getEntryDayMillis() {
+        return entryDayMillis;
+    }
+
+    /** Nullable */
+    public DateTime getEndDate() {
+        return endDate;
     }
 
     public static WidgetEntryPosition getEntryPosition(InstanceSettings settings, boolean allDay, DateTime mainDate, DateTime otherDate) {
@@ -159,25 +209,17 @@ public abstract class WidgetEntry<T extends WidgetEntry<T>> implements Comparabl
 
     @Override
     public int compareTo(WidgetEntry other) {
-        int globalSignum = Integer.signum(entryPosition.globalOrder - other.entryPosition.globalOrder);
+        int globalSignum = Integer.compare(entryPosition.globalOrder, other.entryPosition.globalOrder);
         if (globalSignum != 0) return globalSignum;
 
-        if (DateUtil.isSameDay(entryDay, other.entryDay)) {
-            int sameDaySignum = Integer.signum(entryPosition.sameDayOrder - other.entryPosition.sameDayOrder);
-            if ((sameDaySignum != 0) && DateUtil.isSameDay(entryDay, other.entryDay)) return sameDaySignum;
+        int daySignum = Long.compare(entryEpochDay, other.entryEpochDay);
+        if (daySignum != 0) return daySignum;
 
-            if (entryDate.isAfter(other.entryDate)) {
-                return 1;
-            } else if (entryDate.isBefore(other.entryDate)) {
-                return -1;
-            }
-        } else {
-            if (entryDay.isAfter(other.entryDay)) {
-                return 1;
-            } else if (entryDay.isBefore(other.entryDay)) {
-                return -1;
-            }
-        }
+        int sameDaySignum = Integer.compare(entryPosition.sameDayOrder, other.entryPosition.sameDayOrder);
+        if (sameDaySignum != 0) return sameDaySignum;
+
+        int dateSignum = Long.compare(entryMillis, other.entryMillis);
+        if (dateSignum != 0) return dateSignum;
 
         int sourceSignum = Integer.signum(getSource().order - other.getSource().order);
         return sourceSignum == 0
@@ -187,28 +229,74 @@ public abstract class WidgetEntry<T extends WidgetEntry<T>> implements Comparabl
 
     public boolean duplicates(WidgetEntry other) {
         return entryPosition == other.entryPosition &&
-            entryDate.equals(other.entryDate) &&
+            entryMillis == other.entryMillis &&
+            zone.equals(other.zone) &&
             isSameDate(endDate, other.endDate) &&
             getTitle().equals(other.getTitle()) &&
             getLocation().equals(other.getLocation());
     }
 
+    /** Keys of entries are equal, if and only if the entries duplicate each other, see {@link #duplicates(WidgetEntry)} */
+    public Object duplicatesKey() {
+        return Arrays.asList(entryPosition, entryMillis, zone, endDate, getTitle(), getLocation());
+    }
+
+    /** Id, derived from the identity of the entry, so it is the same for the entry in subsequent reloads */
+    public long getEntryId() {
+        if (entryId == 0) {
+            entryId = toStableId(getIdentity());
+        }
+        return entryId;
+    }
+
+    /** What is shown: e.g. an instance of an event at a day, regardless of its content */
+    protected List<Object> getIdentity() {
+        return Arrays.asList(getClass().getSimpleName(), entryPosition, entryDayMillis);
+    }
+
+    /** 64-bit FNV-1a hash of the identity. Zero is not used */
+    private static long toStableId(List<Object> identity) {
+        long hash = 0xcbf29ce484222325L;
+        String str = identity.toString();
+        for (int ind = 0; ind < str.length(); ind++) {
+            hash ^= str.charAt(ind);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /** Entries with equal fingerprints look the same in a widget, if shown with the same settings on the same day.
+     * So a view of one entry may be reused for another one */
+    public Object getFingerprint() {
+        if (fingerprint == null) {
+            fingerprint = calcFingerprint();
+        }
+        return fingerprint;
+    }
+
+    protected List<Object> calcFingerprint() {
+        OrderedEventSource source = getSource();
+        return new ArrayList<>(Arrays.asList(getClass(), entryPosition, entryMillis,
+                endDate == null ? null : endDate.getMillis(), allDay, timeSection, source.source, source.order,
+                source.source.getColor(), getTitle(), getLocation()));
+    }
+
     public CharSequence formatEntryDate() {
-        return settings.getEntryDateFormat().type == DateFormatType.HIDDEN || !MyClock.isDateDefined(entryDate)
+        return settings.getEntryDateFormat().type == DateFormatType.HIDDEN || !MyClock.isDateDefined(entryMillis)
                 ? ""
-                : settings.entryDateFormatter().formatDate(entryDate);
+                : settings.entryDateFormatter().formatDate(getEntryDate());
     }
 
     public Intent newOnClickFillInIntent() {
-        return new Intent().putExtra(EXTRA_WIDGET_ENTRY_ID, entryId);
+        return new Intent().putExtra(EXTRA_WIDGET_ENTRY_ID, getEntryId());
     }
 
     @Override
     public String toString() {
         return entryPosition.value + " [" +
                 "entryDate=" +
-                (entryDate == MyClock.DATETIME_MIN ? "min" :
-                        (entryDate == MyClock.DATETIME_MAX) ? "max" : entryDate) +
+                (entryMillis == MyClock.DATETIME_MIN.getMillis() ? "min" :
+                        (entryMillis == MyClock.DATETIME_MAX.getMillis()) ? "max" : getEntryDate()) +
                 ", endDate=" + endDate +
                 (allDay ? ", allDay" : "") +
             "]";
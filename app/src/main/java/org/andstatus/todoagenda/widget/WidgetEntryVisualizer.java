@@ -12,9 +12,13 @@ import org.andstatus.todoagenda.prefs.InstanceSettings;
 import org.andstatus.todoagenda.prefs.colors.TextColorPref;
 import org.andstatus.todoagenda.prefs.dateformat.DateFormatType;
 import org.andstatus.todoagenda.provider.EventProvider;
+import org.andstatus.todoagenda.provider.EventProviderType;
 import org.andstatus.todoagenda.util.MyStringBuilder;
 import org.andstatus.todoagenda.util.RemoteViewsUtil;
+import org.andstatus.todoagenda.util.WidgetStyle;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.andstatus.todoagenda.util.RemoteViewsUtil.setBackgroundColor;
@@ -26,11 +30,18 @@ import static org.andstatus.todoagenda.widget.EventEntryLayout.SPACE_PIPE_SPACE;
 
 public abstract class WidgetEntryVisualizer<T extends WidgetEntry<T>> {
     protected final EventProvider eventProvider;
+    private volatile WidgetStyle style = null;
 
     public WidgetEntryVisualizer(EventProvider eventProvider) {
         this.eventProvider = eventProvider;
     }
 
+    /** The style, resolved once for all visualizers of a reload */
+    public WidgetEntryVisualizer<T> withStyle(WidgetStyle style) {
+        this.style = style;
+        return this;
+    }
+
     @NonNull
     public RemoteViews getRemoteViews(WidgetEntry entry, int position) {
         RemoteViews rv = new RemoteViews(getContext().getPackageName(), getSettings().getEventEntryLayout().layoutId);
@@ -41,9 +52,9 @@ public abstract class WidgetEntryVisualizer<T extends WidgetEntry<T>> {
 
         setIndicators(entry, rv);
         if (getSettings().isCompactLayout()) {
-            RemoteViewsUtil.setPadding(getSettings(), rv, R.id.event_entry, R.dimen.zero, R.dimen.zero, R.dimen.zero, R.dimen.zero);
+            RemoteViewsUtil.setPadding(getStyle(), rv, R.id.event_entry, R.dimen.zero, R.dimen.zero, R.dimen.zero, R.dimen.zero);
         } else {
-            RemoteViewsUtil.setPadding(getSettings(), rv, R.id.event_entry, R.dimen.calender_padding, R.dimen.zero, R.dimen.calender_padding, R.dimen.entry_bottom_padding);
+            RemoteViewsUtil.setPadding(getStyle(), rv, R.id.event_entry, R.dimen.calender_padding, R.dimen.zero, R.dimen.calender_padding, R.dimen.entry_bottom_padding);
         }
         setBackgroundColor(rv, R.id.event_entry, getSettings().colors().getEntryBackgroundColor(entry));
         return rv;
@@ -63,17 +74,38 @@ public abstract class WidgetEntryVisualizer<T extends WidgetEntry<T>> {
         return eventProvider.getSettings();
     }
 
+    @NonNull
+    protected WidgetStyle getStyle() {
+        if (style == null) {
+            style = WidgetStyle.of(getSettings());
+        }
+        return style;
+    }
+
     public Context getContext() {
         return eventProvider.context;
     }
 
     public abstract List<T> queryEventEntries();
 
+    /** Entries in the order, in which they are shown in the widget */
+    public List<T> querySortedEventEntries() {
+        List<T> entries = queryEventEntries();
+        for (int ind = 1; ind < entries.size(); ind++) {
+            if (entries.get(ind - 1).compareTo(entries.get(ind)) > 0) {
+                List<T> sorted = new ArrayList<>(entries);
+                Collections.sort(sorted);
+                return sorted;
+            }
+        }
+        return entries;
+    }
+
     protected void setTitle(WidgetEntry entry, RemoteViews rv) {
         int viewId = R.id.event_entry_title;
         rv.setTextViewText(viewId, getTitleString(entry));
-        setTextSize(getSettings(), rv, viewId, R.dimen.event_entry_title);
-        setTextColor(getSettings(), TextColorPref.forTitle(entry), rv, viewId, R.attr.eventEntryTitle);
+        setTextSize(getStyle(), rv, viewId, R.dimen.event_entry_title);
+        setTextColor(getStyle(), TextColorPref.forTitle(entry), rv, viewId, R.attr.eventEntryTitle);
         setMultiline(rv, viewId, getSettings().isMultilineTitle());
     }
 
@@ -97,8 +129,8 @@ public abstract class WidgetEntryVisualizer<T extends WidgetEntry<T>> {
         } else {
             rv.setViewVisibility(viewId, View.VISIBLE);
             rv.setTextViewText(viewId, eventDetails);
-            setTextSize(getSettings(), rv, viewId, R.dimen.event_entry_details);
-            setTextColor(getSettings(), TextColorPref.forDetails(entry), rv, viewId, R.attr.dayHeaderTitle);
+            setTextSize(getStyle(), rv, viewId, R.dimen.event_entry_details);
+            setTextColor(getStyle(), TextColorPref.forDetails(entry), rv, viewId, R.attr.dayHeaderTitle);
             setMultiline(rv, viewId, getSettings().isMultilineDetails());
         }
     }
@@ -110,7 +142,7 @@ public abstract class WidgetEntryVisualizer<T extends WidgetEntry<T>> {
             rv.setViewVisibility(R.id.event_entry_days, View.GONE);
             rv.setViewVisibility(R.id.event_entry_days_right, View.GONE);
         } else {
-            int days = getSettings().clock().getNumberOfDaysTo(entry.entryDate);
+            int days = getSettings().clock().getNumberOfDaysTo(entry.getEntryDate());
             boolean daysAsText = getSettings().getEntryDateFormat().type != DateFormatType.NUMBER_OF_DAYS ||
                     (days > -2 && days < 2);
 
@@ -120,11 +152,11 @@ public abstract class WidgetEntryVisualizer<T extends WidgetEntry<T>> {
             rv.setViewVisibility(viewToShow, View.VISIBLE);
 
             rv.setTextViewText(viewToShow, entry.formatEntryDate());
-            setViewWidth(getSettings(), rv, viewToShow, daysAsText
+            setViewWidth(getStyle(), rv, viewToShow, daysAsText
                     ? R.dimen.days_to_event_width
                     : R.dimen.days_to_event_right_width);
-            setTextSize(getSettings(), rv, viewToShow, R.dimen.event_entry_details);
-            setTextColor(getSettings(), TextColorPref.forDetails(entry), rv, viewToShow, R.attr.dayHeaderTitle);
+            setTextSize(getStyle(), rv, viewToShow, R.dimen.event_entry_details);
+            setTextColor(getStyle(), TextColorPref.forDetails(entry), rv, viewToShow, R.attr.dayHeaderTitle);
         }
     }
 
@@ -135,9 +167,13 @@ public abstract class WidgetEntryVisualizer<T extends WidgetEntry<T>> {
         RemoteViewsUtil.setMultiline(rv, viewId, getSettings().getShowEndTime());
         rv.setTextViewText(viewId, entry.getEventTimeString().replace(CalendarEntry
                 .SPACE_DASH_SPACE, "\n"));
-        setViewWidth(getSettings(), rv, viewId, R.dimen.event_time_width);
-        setTextSize(getSettings(), rv, viewId, R.dimen.event_entry_details);
-        setTextColor(getSettings(), TextColorPref.forDetails(entry), rv, viewId, R.attr.dayHeaderTitle);
+        setViewWidth(getStyle(), rv, viewId, R.dimen.event_time_width);
+        setTextSize(getStyle(), rv, viewId, R.dimen.event_entry_details);
+        setTextColor(getStyle(), TextColorPref.forDetails(entry), rv, viewId, R.attr.dayHeaderTitle);
+    }
+
+    public EventProviderType getProviderType() {
+        return eventProvider.type;
     }
 
     public boolean isFor(WidgetEntry entry) {